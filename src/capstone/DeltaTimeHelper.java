@@ -1,36 +1,36 @@
 package capstone;
 
-import static java.lang.Math.toIntExact;
-
 /**
  * DeltaTimeHelper is a helper class that provides a simple object that is capable of doing basic timekeeping.
  * It can be used to set up timers, refresh rates, and in general keep track of how much time has passed since
  * creation and / or last reset of the helper object.
+ * It is based on the monotonic System.nanoTime(), so the delta can never become negative.
+ * Timers inside a level should use the {@link GameClock} of the level instead, which respects pausing.
  */
 public class DeltaTimeHelper {
-    private int millis;
+    private long nanos;
 
     /**
      * Creates a new DeltaTimeHelper with the current system time.
      */
     public DeltaTimeHelper() {
-        millis = toIntExact(System.currentTimeMillis() % 100000000);
+        nanos = System.nanoTime();
     }
 
     /**
      * Resets the time used to determine the time delta.
      */
     public void reset() {
-        millis = toIntExact(System.currentTimeMillis() % 100000000);
+        nanos = System.nanoTime();
     }
 
     /**
      * Gets the time delta since the last reset.
      *
-     * @return time delta
+     * @return time delta in milliseconds
      */
     public int getDeltaTime() {
-        return toIntExact(System.currentTimeMillis() % 100000000) - millis;
+        return (int) ((System.nanoTime() - nanos) / 1000000);
     }
 
     /**
@@ -0,0 +1,74 @@
+package capstone;
+
+/**
+ * The game clock is the single source of time for everything that happens inside a level. Instead of every object
+ * asking the system for the current time whenever it checks a timer, the clock is advanced once per simulation tick
+ * and all objects compare their timers against that value. This is cheaper, and it means that all objects agree on
+ * what time it is during a tick.
+ * <p>
+ * The clock does not look at the system time at all: it is advanced by the fixed time step of the {@link GameLoop}.
+ * This way, the game logic behaves the same no matter how fast or slow the terminal is. Game time only advances while
+ * the clock is not paused, which freezes all timers (trap movement, score decay, cooldowns, ...) while a menu is open.
+ */
+public class GameClock {
+    private long time; //game time in milliseconds
+    private int deltaTime; //game time passed during the last tick in milliseconds
+    private boolean paused;
+
+    /**
+     * Creates a new game clock starting at game time 0.
+     */
+    public GameClock() {
+    }
+
+    /**
+     * Advances the game time by one simulation tick (unless the clock is paused).
+     * This should be called exactly once per tick.
+     *
+     * @param deltaTime length of the tick in milliseconds
+     */
+    public void advance(int deltaTime) {
+        if (paused) {
+            this.deltaTime = 0;
+            return;
+        }
+        this.deltaTime = deltaTime;
+        time += deltaTime;
+    }
+
+    /**
+     * Gets the game time of the last tick.
+     *
+     * @return game time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the game time that has passed during the last tick.
+     *
+     * @return time delta in milliseconds
+     */
+    public int getDeltaTime() {
+        return deltaTime;
+    }
+
+    /**
+     * Whether the game time is currently frozen.
+     *
+     * @return clock is paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Freezes or unfreezes the game time. Ticks that happen while the clock is paused are never added to the game time.
+     *
+     * @param paused whether the clock should be paused
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+}
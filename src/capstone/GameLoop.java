@@ -0,0 +1,129 @@
+package capstone;
+
+import capstone.notificationcenter.NotificationCenter;
+import capstone.notificationcenter.NotificationListener;
+import capstone.notificationcenter.NotificationMessage;
+import com.googlecode.lanterna.input.Key;
+import com.googlecode.lanterna.screen.Screen;
+
+import java.util.EnumSet;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The game loop drives the view manager. Previously, the game was updated, drawn and refreshed in one loop that ran as
+ * fast as possible, so the speed of the simulation and the CPU usage depended on how fast the terminal could refresh.
+ * <p>
+ * The game loop separates the two: the game logic is simulated in fixed ticks of {@link #TICK_MILLIS}, while the
+ * screen is drawn and refreshed at most {@link #MAX_FRAMES_PER_SECOND} times per second. Real time that passes is
+ * collected in an accumulator, from which whole ticks are taken. If the terminal hangs for a moment, the missed ticks
+ * are simulated afterwards, so the game logic does not notice the hiccup. If it hangs for too long, the missed time is
+ * dropped instead of running hundreds of ticks at once. Whenever there is neither a tick nor a frame due, the thread
+ * is parked until there is, so an idle game hardly uses any CPU.
+ * <p>
+ * Before every tick, the notifications posted since the last tick (possibly by other threads) are handed to their
+ * subscribers, see {@link NotificationCenter#dispatch()}.
+ */
+public class GameLoop {
+    public static final int TICK_MILLIS = 10; //length of a simulation tick
+    private static final int MAX_FRAMES_PER_SECOND = 30;
+    private static final int MAX_TICKS_PER_FRAME = 25; //catch up at most a quarter of a second at once
+
+    private static final long TICK_NANOS = TICK_MILLIS * 1000000L;
+    private static final long FRAME_NANOS = 1000000000L / MAX_FRAMES_PER_SECOND;
+
+    private final Screen screen;
+    private final ViewManager viewManager;
+    private boolean running;
+    private long droppedTicks; //ticks that were dropped because the loop fell too far behind
+
+    /**
+     * Creates a new game loop.
+     *
+     * @param screen      Lanterna screen to read input from and to refresh
+     * @param viewManager view manager holding the views of the game
+     */
+    public GameLoop(Screen screen, ViewManager viewManager) {
+        this.screen = screen;
+        this.viewManager = viewManager;
+    }
+
+    /**
+     * Runs the game loop until a QUIT notification is received.
+     */
+    public void run() {
+        NotificationListener quitListener = message -> running = false;
+        NotificationCenter.subscribe(EnumSet.of(NotificationMessage.QUIT), quitListener);
+        running = true;
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+
+            int ticks = 0;
+            while (accumulator >= TICK_NANOS && ticks < MAX_TICKS_PER_FRAME) {
+                NotificationCenter.dispatch();
+                if (!running) {
+                    break;
+                }
+                viewManager.update(TICK_MILLIS);
+                //keystrokes are handed to the views one per tick, so that views pushed by a keystroke (e.g. the menu)
+                //are already on the stack when the next keystroke arrives
+                Key key = screen.getTerminal().readInput();
+                if (key != null) {
+                    viewManager.processKeystroke(key);
+                }
+                accumulator -= TICK_NANOS;
+                ++ticks;
+            }
+            if (accumulator >= TICK_NANOS) {
+                //we are too far behind, the remaining time is dropped instead of being simulated
+                droppedTicks += accumulator / TICK_NANOS;
+                accumulator %= TICK_NANOS;
+            }
+
+            if (running && now - nextFrame >= 0) {
+                renderFrame();
+                //do not try to catch up on frames that were missed, just draw the next one in time
+                nextFrame = Math.max(nextFrame + FRAME_NANOS, now);
+            }
+
+            //sleep until either the next tick or the next frame is due
+            long wait = Math.min(TICK_NANOS - accumulator, nextFrame - System.nanoTime());
+            if (running && wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        NotificationCenter.unsubscribe(quitListener);
+    }
+
+    /**
+     * Gets the amount of ticks that were dropped instead of being simulated, because the loop had fallen too far
+     * behind.
+     *
+     * @return amount of dropped ticks
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Draws the topmost view and pushes the changes to the terminal.
+     */
+    private void renderFrame() {
+        if (screen.resizePending()) {
+            screen.clear();
+            viewManager.processResize();
+        }
+        viewManager.render();
+        try {
+            screen.refresh();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            //this just means that a character was written outside the possible screen. It is discarded and not handled
+            // because this is a common occurrence when changing the terminal's size by dragging its corner around
+            System.out.println("Silencing ArrayIndexOutOfBounds for Window");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package capstone;
+
+import java.util.Arrays;
+
+/**
+ * The timing wheel is a scheduler for things that only need to be looked at from time to time. Instead of asking every
+ * object on every tick whether one of its timers has run out, each object registers the game time at which it next
+ * wants to be woken up, and every tick only hands out the objects whose time has come. The cost of a tick thus depends
+ * on the amount of objects that actually act, not on the amount of objects in the level.
+ * <p>
+ * Objects are identified by small non-negative integer keys (e.g. the slot of a moving trap), so scheduling does not
+ * create any garbage: every key is part of one doubly linked list, kept in plain arrays. There is one list per bucket.
+ * <p>
+ * The wheel is hierarchical: the first level has one bucket per millisecond for the next 64 milliseconds, the second
+ * level one bucket per 64 milliseconds for the next 4 seconds, and so on. Whenever the time crosses the boundary of a
+ * bucket of a higher level, its entries are spread out into the buckets of the lower levels. This keeps scheduling and
+ * handing out at constant cost, no matter how far in the future an entry lies. Entries further away than the last
+ * level reaches (about four and a half hours) are simply looked at again once that time has passed.
+ */
+public class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS; //buckets per level
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS); //milliseconds the wheel reaches into the future
+    private static final int READY = LEVELS * SLOTS; //bucket of the entries that are already due
+    private static final int NONE = -1;
+
+    private final int[] heads = new int[READY + 1]; //first key of each bucket
+    private int[] next = new int[16];
+    private int[] previous = new int[16];
+    private int[] buckets = new int[16]; //bucket a key is in, NONE if it is not scheduled
+    private long[] times = new long[16]; //game time at which a key is due
+    private int[] due = new int[16]; //keys handed out by the last advance
+    private int dueCount;
+    private long current; //game time up to which all entries have been handed out
+    private int size;
+    private long lateness; //longest time an entry handed out by the last advance was overdue
+
+    /**
+     * Creates an empty timing wheel starting at game time 0.
+     */
+    public TimingWheel() {
+        Arrays.fill(heads, NONE);
+        Arrays.fill(buckets, NONE);
+    }
+
+    /**
+     * Schedules a key to be handed out once the given game time is reached. If the key is already scheduled, its
+     * time is replaced. Times that have already passed are handed out by the next advance.
+     *
+     * @param key  non-negative key
+     * @param time game time in milliseconds
+     */
+    public void schedule(int key, long time) {
+        ensureCapacity(key);
+        if (buckets[key] == NONE) {
+            ++size;
+        } else {
+            unlink(key);
+        }
+        times[key] = time;
+        insert(key);
+    }
+
+    /**
+     * Removes a key from the wheel. Nothing happens if it is not scheduled.
+     *
+     * @param key key to be removed
+     */
+    public void remove(int key) {
+        if (isScheduled(key)) {
+            unlink(key);
+            --size;
+        }
+    }
+
+    /**
+     * Whether a key is currently waiting in the wheel.
+     *
+     * @param key key
+     * @return key is scheduled
+     */
+    public boolean isScheduled(int key) {
+        return key >= 0 && key < buckets.length && buckets[key] != NONE;
+    }
+
+    /**
+     * Gets the game time a scheduled key is due.
+     *
+     * @param key scheduled key
+     * @return game time in milliseconds
+     */
+    public long getTime(int key) {
+        return times[key];
+    }
+
+    /**
+     * Advances the wheel to the given game time and collects all keys that are due by then. The keys are removed from
+     * the wheel, so they have to be scheduled again if they want to be woken up another time.
+     *
+     * @param now current game time
+     * @return amount of keys that are due, see {@link #getDue()}
+     */
+    public int advance(long now) {
+        dueCount = 0;
+        lateness = 0;
+        if (size == 0) {
+            //nothing to hand out, so there is no need to go through the buckets in between
+            current = Math.max(current, now);
+            return 0;
+        }
+        while (current < now) {
+            long time = ++current;
+            if ((time & SLOT_MASK) == 0) {
+                cascade(time);
+            }
+            takeBucket((int) (time & SLOT_MASK), now);
+        }
+        takeBucket(READY, now);
+        return dueCount;
+    }
+
+    /**
+     * Gets the keys handed out by the last advance. The array is reused, only the first entries are valid.
+     *
+     * @return due keys
+     */
+    public int[] getDue() {
+        return due;
+    }
+
+    /**
+     * Gets the amount of keys waiting in the wheel (the depth of the queue).
+     *
+     * @return amount of scheduled keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the longest time a key handed out by the last advance was overdue. Since the wheel is advanced once per
+     * tick, this is usually less than the length of a tick.
+     *
+     * @return lateness in milliseconds
+     */
+    public long getLateness() {
+        return lateness;
+    }
+
+    /**
+     * Spreads out the entries of the buckets of the higher levels whose time span starts at the given time.
+     *
+     * @param time game time at the boundary of a first level round
+     */
+    private void cascade(long time) {
+        int level = 1;
+        while (level < LEVELS - 1 && (time & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+            ++level;
+        }
+        //the highest level first, since its entries may end up in the buckets of the lower levels
+        for (; level > 0; --level) {
+            int bucket = level * SLOTS + (int) ((time >> (SLOT_BITS * level)) & SLOT_MASK);
+            int key = heads[bucket];
+            heads[bucket] = NONE;
+            while (key != NONE) {
+                int following = next[key];
+                insert(key);
+                key = following;
+            }
+        }
+    }
+
+    /**
+     * Hands out all keys of a bucket.
+     *
+     * @param bucket bucket to be emptied
+     * @param now    current game time
+     */
+    private void takeBucket(int bucket, long now) {
+        int key = heads[bucket];
+        heads[bucket] = NONE;
+        while (key != NONE) {
+            int following = next[key];
+            buckets[key] = NONE;
+            --size;
+            if (dueCount == due.length) {
+                due = Arrays.copyOf(due, dueCount * 2);
+            }
+            due[dueCount++] = key;
+            lateness = Math.max(lateness, now - times[key]);
+            key = following;
+        }
+    }
+
+    /**
+     * Puts a key into the bucket matching its time.
+     *
+     * @param key key that is not part of any bucket
+     */
+    private void insert(int key) {
+        long time = times[key];
+        long delta = time - current;
+        int bucket;
+        if (delta <= 0) {
+            bucket = READY;
+        } else if (delta < SLOTS) {
+            bucket = (int) (time & SLOT_MASK);
+        } else {
+            if (delta >= RANGE) {
+                time = current + RANGE - 1;
+                delta = RANGE - 1;
+            }
+            int level = 1;
+            while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+                ++level;
+            }
+            bucket = level * SLOTS + (int) ((time >> (SLOT_BITS * level)) & SLOT_MASK);
+        }
+        buckets[key] = bucket;
+        previous[key] = NONE;
+        next[key] = heads[bucket];
+        if (heads[bucket] != NONE) {
+            previous[heads[bucket]] = key;
+        }
+        heads[bucket] = key;
+    }
+
+    /**
+     * Takes a key out of its bucket.
+     *
+     * @param key scheduled key
+     */
+    private void unlink(int key) {
+        int bucket = buckets[key];
+        if (previous[key] == NONE) {
+            heads[bucket] = next[key];
+        } else {
+            next[previous[key]] = next[key];
+        }
+        if (next[key] != NONE) {
+            previous[next[key]] = previous[key];
+        }
+        buckets[key] = NONE;
+    }
+
+    /**
+     * Makes sure the arrays have room for the given key.
+     *
+     * @param key key that is about to be scheduled
+     */
+    private void ensureCapacity(int key) {
+        if (key < buckets.length) {
+            return;
+        }
+        int capacity = Math.max(buckets.length * 2, key + 1);
+        next = Arrays.copyOf(next, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        times = Arrays.copyOf(times, capacity);
+        int oldCapacity = buckets.length;
+        buckets = Arrays.copyOf(buckets, capacity);
+        Arrays.fill(buckets, oldCapacity, capacity, NONE);
+    }
+}
@@ -1,5 +1,6 @@
 package capstone;
 
+import capstone.notificationcenter.NotificationCenter;
 import capstone.views.View;
 import com.googlecode.lanterna.input.Key;
 
@@ -17,21 +18,24 @@ public class ViewManager {
     }
 
     /**
-     * Pushes a new view on top of the stack.
+     * Pushes a new view on top of the stack. From now on, it receives the notifications it has subscribed to.
      *
      * @param view View to be pushed on top of the stack
      */
     public void push(View view) {
         stack.push(view);
+        NotificationCenter.subscribe(view.getSubscriptions(), view);
     }
 
     /**
-     * Returns and removes the topmost view on the stack.
+     * Returns and removes the topmost view on the stack. It no longer receives any notifications.
      *
      * @return popped View
      */
     public View pop() {
-        return stack.pop();
+        View view = stack.pop();
+        NotificationCenter.unsubscribe(view);
+        return view;
     }
 
     /**
@@ -44,8 +48,8 @@ public class ViewManager {
     }
 
     /**
-     * Allows all views to do so-called management update in which the views can clean up after themselves, check
-     * for pending actions, or e.g. request to removed from the view stack.
+     * Views react to notifications regardless of their position in the stack as soon as the notifications arrive
+     * (see {@link View#onNotification}), which is where they can e.g. request to be removed from the view stack.
      * If the top view has requested removal from the view stack, it will be removed.
      * If the top view has requested for a new view to be pushed upon the stack, the new view will be added.
      * The now topmost view will be updated.
@@ -56,29 +60,30 @@ public class ViewManager {
      * @return successful update
      */
     public boolean update(int deltatime) {
-
-        //Allow every view to do management update regardless of their position in the stack.
-        for (View v : stack) {
-            v.managementUpdate();
-        }
-
         View currentView = stack.peek();
         if (stack.peek().requestsViewStackRemoval()) {
             System.out.println(stack.peek() + " has requested view stack removal");
             //the topmost view will be removed
-            stack.pop();
+            pop();
         }
         View newView = currentView.requestsViewStackAddition();
         if (newView != null) {
             System.out.println(stack.peek() + " has requested to push " + newView + " onto view stack");
             stack.peek().resetViewStackAddition();
             //a view has requested for a new view to be pushed onto the stack
-            stack.push(newView);
+            push(newView);
         }
         //the topmost view will be able to update / draw to the screen
         return stack.peek().update(deltatime);
     }
 
+    /**
+     * Lets the topmost view draw itself to the screen. Called once per frame, after all updates of the frame.
+     */
+    public void render() {
+        stack.peek().render();
+    }
+
     /**
      * Hands off window resizing functionality to the topmost view in the stack.
      */
@@ -1,27 +1,31 @@
 package capstone.gameobject.dynamicObjects;
 
-import capstone.DeltaTimeHelper;
+import capstone.GameClock;
 import capstone.ScoringHelper;
 import capstone.level.Level;
 import capstone.level.LevelHelper;
 import com.googlecode.lanterna.terminal.Terminal;
 
-import java.util.Iterator;
+import java.util.ArrayList;
 
 /**
  * A bullet (or ingame: Shuriken) is a projectile that flies across the level until it hits either a player collider
  * (such as a wall) or it hits an enemy, killing it in the process. It can not change direction while flying.
+ * Once it has collided, it removes itself from the level, which keeps it for the next shot (see
+ * {@link Level#obtainBullet(int, int, Direction)}).
  */
 public class BulletGameObject extends DynamicGameObject {
 
-    private final DeltaTimeHelper deltaTimeHelper; //used for flight speed
-    private final Direction direction; //direction the bullet is going
+    private static final int FLIGHT_INTERVAL = 150; //milliseconds the bullet needs to fly across one field
+    private long nextFlightStep; //game time of the next movement
+    private Direction direction; //direction the bullet is going
     private boolean collided; //whether the bullet has collided
     private boolean hasMoved; //whether the bullet has moved from its recent location
     private boolean hasHitEnemy; //whether the bullet has hit an enemy
     private boolean hasAddedPlayerScore; //whether the player score was already modified
     private final char alternativeRepresentation;
     private final char originalRepresentation;
+    private final ArrayList<DynamicGameObject> hitCandidates = new ArrayList<>(); //reused for collision queries
 
     /**
      * Directions used for the trajectory of the Bullet
@@ -50,92 +54,127 @@ public class BulletGameObject extends DynamicGameObject {
         this.foregroundColor = Terminal.Color.YELLOW;
         this.entityName = "Shuriken (fired by pressing W,A,S or D)";
         this.direction = direction;
-        this.deltaTimeHelper = new DeltaTimeHelper();
+        this.nextFlightStep = currentTime() + FLIGHT_INTERVAL;
         this.savable = false;
     }
 
     /**
-     * Checks whether the bullet has hit an enemy, and, if so, adds score to the player.
+     * Makes a collided bullet ready to be fired again, as if it had just been created.
+     *
+     * @param x         x coordinate of the bullet
+     * @param y         y coordinate of the bullet
+     * @param direction trajectory of the bullet
+     */
+    public void reset(int x, int y, Direction direction) {
+        this.x = x;
+        this.y = y;
+        this.oldX = x;
+        this.oldY = y;
+        this.direction = direction;
+        this.representation = this.originalRepresentation;
+        this.nextFlightStep = currentTime() + FLIGHT_INTERVAL;
+        this.collided = false;
+        this.hasMoved = false;
+        this.hasHitEnemy = false;
+        this.hasAddedPlayerScore = false;
+    }
+
+    /**
+     * A bullet does not modify the player it lies on. The score for hitting an enemy is handed out directly when the
+     * hit happens, since bullets usually fly far away from the player.
      *
      * @param p a reference to the player object.
      */
     @Override
     public void modifyPlayer(PlayerGameObject p) {
-        if (hasHitEnemy && !hasAddedPlayerScore) {
-            p.modifyScore(ScoringHelper.getBaseValue() / 4);
-            hasAddedPlayerScore = true;
-        }
     }
 
     /**
      * Animates the representation of the shuriken ("rotating"), checks for collisions, removes itself from the level
-     * if necessary, and removes hit enemies from the game.
+     * if necessary, and removes hit enemies from the game. Both only happen at the end of the tick.
      *
-     * @param deltaTime passed time since last call
+     * @param clock game clock of the level
      */
     @Override
-    public void update(int deltaTime) {
-        if (deltaTimeHelper.getDeltaTime() > 150) {
+    public void update(GameClock clock) {
+        if (clock.getTime() >= nextFlightStep) {
             if (this.representation == this.originalRepresentation) {
                 this.representation = this.alternativeRepresentation;
             } else {
                 this.representation = this.originalRepresentation;
             }
-            deltaTimeHelper.reset();
+            nextFlightStep = clock.getTime() + FLIGHT_INTERVAL;
             oldX = x;
             oldY = y;
             //collision check
             switch (this.direction) {
                 case UP:
                     if (LevelHelper.checkWalkable(level, x, y - 1, true)) {
-                        --y;
+                        moveTo(x, y - 1);
                     } else {
                         collided = true;
                     }
                     break;
                 case DOWN:
                     if (LevelHelper.checkWalkable(level, x, y + 1, true)) {
-                        ++y;
+                        moveTo(x, y + 1);
                     } else {
                         collided = true;
                     }
                     break;
                 case LEFT:
                     if (LevelHelper.checkWalkable(level, x - 1, y, true)) {
-                        --x;
+                        moveTo(x - 1, y);
                     } else {
                         collided = true;
                     }
                     break;
                 case RIGHT:
                     if (LevelHelper.checkWalkable(level, x + 1, y, true)) {
-                        ++x;
+                        moveTo(x + 1, y);
                     } else {
                         collided = true;
                     }
                     break;
             }
-            needsUpdate = true;
             hasMoved = true;
             if (collided) {
                 //remove it from the playing field
-                x = -1;
-                y = -1;
-                this.needsUpdate = true;
+                level.removeDynamicGameObject(this);
+                return;
             }
 
-            Iterator<DynamicGameObject> dynamicGameObjectIterator = level.getDynamicGameObjects().iterator();
-            while (dynamicGameObjectIterator.hasNext()) {
-                DynamicGameObject d = dynamicGameObjectIterator.next();
-                if (d.isDestroyable() && d.getX() == x && d.getY() == y) {
-                    dynamicGameObjectIterator.remove();
+            //only the objects standing on the same field as the bullet can be hit
+            level.queryDynamicGameObjectsAt(x, y, hitCandidates);
+            for (int i = 0; i < hitCandidates.size(); ++i) {
+                DynamicGameObject d = hitCandidates.get(i);
+                if (d.isDestroyable() && !d.isPendingRemoval()) {
+                    level.removeDynamicGameObject(d);
                     hasHitEnemy = true;
                     collided = true;
                 }
             }
+            hitCandidates.clear();
+            if (hasHitEnemy && !hasAddedPlayerScore) {
+                level.getPlayer().modifyScore(ScoringHelper.getBaseValue() / 4);
+                hasAddedPlayerScore = true;
+            }
+            if (collided) {
+                level.removeDynamicGameObject(this);
+            }
         }
     }
 
+    /**
+     * A bullet only needs to be updated when it flies on to the next field, and no longer at all once it has collided.
+     *
+     * @return game time of the next flight step, or NEVER
+     */
+    @Override
+    public long getNextWakeUp() {
+        return collided ? NEVER : nextFlightStep;
+    }
+
     public boolean isCollided() {
         return collided;
     }
@@ -1,5 +1,6 @@
 package capstone.gameobject.dynamicObjects;
 
+import capstone.GameClock;
 import capstone.gameobject.GameObject;
 import capstone.level.Level;
 
@@ -8,14 +9,16 @@ import capstone.level.Level;
  * and is usually not confined to the space of a 2D array. It can interact with the player.
  */
 public abstract class DynamicGameObject extends GameObject {
+    public static final long NEVER = Long.MAX_VALUE; //wake-up time of objects that have nothing left to do
     int x;
     int y;
     int oldX;
     int oldY;
-    boolean needsUpdate = true;
     boolean destroyable;
     Level level;
     protected boolean savable;
+    private int levelSlot = -1; //slot of the object in its level, -1 if it is not part of one
+    private boolean pendingRemoval; //the object is removed from the level at the end of the current tick
 
     /**
      * Constructs a new Dynamic Game Object. Since the class is abstract, this is never directly called.
@@ -51,21 +54,49 @@ public abstract class DynamicGameObject extends GameObject {
     }
 
     /**
-     * Whether an update of the player representation is required.
+     * Moves the dynamic game object to a new position. All movement should go through this method, since the level
+     * needs to be told about the new position in order to keep its spatial index up to date.
      *
-     * @return update is required
+     * @param newX new x coordinate
+     * @param newY new y coordinate
      */
-    public boolean isNeedsUpdate() {
-        return needsUpdate;
+    protected void moveTo(int newX, int newY) {
+        int previousX = x;
+        int previousY = y;
+        x = newX;
+        y = newY;
+        if (level != null) {
+            level.dynamicGameObjectMoved(this, previousX, previousY);
+        }
     }
 
     /**
-     * Set whether an update is needed or not.
+     * Gets the current game time of the level the object resides in. Objects that are not part of a level (e.g. the
+     * ones shown in the legend) always see the game time 0.
      *
-     * @param needsUpdate update needed
+     * @return game time in milliseconds
      */
-    public void setNeedsUpdate(boolean needsUpdate) {
-        this.needsUpdate = needsUpdate;
+    protected long currentTime() {
+        return level == null ? 0 : level.getClock().getTime();
+    }
+
+    /**
+     * Gets the level the dynamic game object resides in
+     *
+     * @return level of the dynamic game object
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Tells the level that the representation of the object has changed, so that its field is drawn again if it is
+     * on screen. Movements through {@link #moveTo(int, int)} are reported automatically.
+     */
+    public void markChanged() {
+        if (level != null) {
+            level.dynamicGameObjectChanged(this);
+        }
     }
 
     /**
@@ -97,11 +128,61 @@ public abstract class DynamicGameObject extends GameObject {
     public abstract void modifyPlayer(PlayerGameObject p);
 
     /**
-     * Updates a dynamic game object according to the time delta that has passed
+     * Updates a dynamic game object according to the game clock of the level. Timers should be compared against the
+     * time of the clock, which is sampled once per frame, rather than against the system time.
+     *
+     * @param clock game clock of the level
+     */
+    public abstract void update(GameClock clock);
+
+    /**
+     * Gets the game time at which the object next wants to be updated. The level only updates an object once this
+     * time has come, so objects with timers should return the time of their next timer. By default, an object is
+     * updated on every tick.
+     *
+     * @return game time in milliseconds, or NEVER if the object does not need any more updates
+     */
+    public long getNextWakeUp() {
+        return currentTime();
+    }
+
+    /**
+     * Gets the slot of the object within its level. The slot stays the same for as long as the object is part of the
+     * level. Moving traps are held by the trap swarm instead and have no level slot.
      *
-     * @param deltaTime passed time since last call
+     * @return slot, or -1 if the object is not part of a level
      */
-    public abstract void update(int deltaTime);
+    public int getLevelSlot() {
+        return levelSlot;
+    }
+
+    /**
+     * Sets the slot of the object within its level. Only to be called by the level.
+     *
+     * @param levelSlot slot, or -1 if the object has been removed
+     */
+    public void setLevelSlot(int levelSlot) {
+        this.levelSlot = levelSlot;
+    }
+
+    /**
+     * Whether the object has been removed during the current tick and is about to be taken out of the level at its
+     * end. Such objects should no longer be interacted with (e.g. hit by another bullet).
+     *
+     * @return object is about to be removed
+     */
+    public boolean isPendingRemoval() {
+        return pendingRemoval;
+    }
+
+    /**
+     * Marks the object as about to be removed from the level. Only to be called by the level.
+     *
+     * @param pendingRemoval object is about to be removed
+     */
+    public void setPendingRemoval(boolean pendingRemoval) {
+        this.pendingRemoval = pendingRemoval;
+    }
 
     /**
      * Whether an object can / should be saved within a save file.
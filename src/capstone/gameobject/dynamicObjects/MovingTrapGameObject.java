@@ -1,21 +1,19 @@
 package capstone.gameobject.dynamicObjects;
 
-import capstone.DeltaTimeHelper;
-import capstone.ScoringHelper;
+import capstone.GameClock;
 import capstone.level.Level;
-import capstone.level.LevelHelper;
 import com.googlecode.lanterna.terminal.Terminal;
 
-import java.util.Random;
-
+/**
+ * A moving trap runs around the level with a tendency to walk towards the player, and hurts him upon contact.
+ * <p>
+ * As soon as a moving trap is added to a level, its state (position, timers, animation) is taken over by the
+ * {@link TrapSwarm} of the level, which updates all traps at once. The object itself then only serves as a handle to
+ * its entry in the swarm, so it can still be rendered, saved and hit like any other dynamic game object.
+ */
 public class MovingTrapGameObject extends DynamicGameObject {
-    private final DeltaTimeHelper deltaTimeHelper;
-    private final DeltaTimeHelper damageDeltaTimeHelper;
-    private final DeltaTimeHelper animationTimeHelper;
-    private int animationStep = 0;
-    private int playerLocationX;
-    private int playerLocationY;
-    private final Random random;
+    private TrapSwarm swarm; //null as long as the trap is not part of a level
+    private int slot = -1;
 
     /**
      * Creates a new moving trap at a given X/Y-spawn position in a given level.
@@ -31,141 +29,96 @@ public class MovingTrapGameObject extends DynamicGameObject {
         this.foregroundColor = Terminal.Color.RED;
         this.backgroundColor = Terminal.Color.BLACK;
         this.entityName = "Moving Trap";
-        this.deltaTimeHelper = new DeltaTimeHelper();
-        this.damageDeltaTimeHelper = new DeltaTimeHelper();
-        this.animationTimeHelper = new DeltaTimeHelper();
-        this.animationStep = 0;
         this.destroyable = true;
         this.savable = true;
-        random = new Random();
     }
 
     /**
-     * Checks whether the player stands on the trap and damages him if so.
-     * A DeltaTimeHelper is used to ensure that the player does not get hurt repeatedly too quickly. He will take
-     * a maximum of 1 damage per second.
+     * Hands the state of this trap over to a swarm.
      *
-     * @param p a reference to the player object.
+     * @param swarm swarm that holds the state from now on
+     * @param slot  slot of this trap within the swarm
      */
-    @Override
-    public void modifyPlayer(PlayerGameObject p) {
-        this.playerLocationX = p.getX();
-        this.playerLocationY = p.getY();
-        if (x == p.getX() && y == p.getY()) {
-            needsUpdate = true;
-            if (damageDeltaTimeHelper.getDeltaTime() > 1000) {
-                damageDeltaTimeHelper.reset();
-                p.modifyLives(-1);
-                p.modifyScore(-ScoringHelper.getBaseValue() / 5);
-            }
-        }
-        p.setNeedsUpdate(true);
-        //Redraw the player upon collision
+    void attach(TrapSwarm swarm, int slot) {
+        this.swarm = swarm;
+        this.slot = slot;
+    }
+
+    /**
+     * Takes the state of this trap back from its swarm (upon removal from the level).
+     *
+     * @param x    last x coordinate
+     * @param y    last y coordinate
+     * @param oldX last pre-movement x coordinate
+     * @param oldY last pre-movement y coordinate
+     */
+    void detach(int x, int y, int oldX, int oldY) {
+        this.x = x;
+        this.y = y;
+        this.oldX = oldX;
+        this.oldY = oldY;
+        this.swarm = null;
+        this.slot = -1;
     }
 
     /**
-     * Randomly and "frame-independently" moves the trap in a player-biased-random direction.
-     * This method also checks whether collisions are possible, and if so, does not move the trap.
+     * Gets the slot of this trap within its swarm
      *
-     * @param deltaTime passed time since last call
+     * @return slot, or -1 if the trap is not part of a swarm
      */
+    int getSlot() {
+        return slot;
+    }
+
     @Override
-    public void update(int deltaTime) {
-        updateRepresentation();
-        //System.out.println(internalDeltaCounter);
-        if (deltaTimeHelper.getDeltaTime() > 500) {
-            deltaTimeHelper.reset();
-            oldX = x;
-            oldY = y;
-            //determine walking direction by throw of dice
-            int direction = chooseDirection();
-            switch (direction) {
-                case 0:
-                    //up
-                    if (LevelHelper.checkWalkable(level, x, y - 1, false)) {
-                        --y;
-                    }
-                    break;
-                case 1:
-                    //down
-                    if (LevelHelper.checkWalkable(level, x, y + 1, false)) {
-                        ++y;
-                    }
-                    break;
-                case 2:
-                    //left
-                    if (LevelHelper.checkWalkable(level, x - 1, y, false)) {
-                        --x;
-                    }
-                    break;
-                case 3:
-                    //right
-                    if (LevelHelper.checkWalkable(level, x + 1, y, false)) {
-                        ++x;
-                    }
-                    break;
-            }
-            if (x != oldX || y != oldY) {
-                needsUpdate = true;
-            }
-        }
+    public int getX() {
+        return swarm == null ? x : swarm.getX(slot);
+    }
+
+    @Override
+    public int getY() {
+        return swarm == null ? y : swarm.getY(slot);
+    }
+
+    @Override
+    public int getOldX() {
+        return swarm == null ? oldX : swarm.getOldX(slot);
+    }
+
+    @Override
+    public int getOldY() {
+        return swarm == null ? oldY : swarm.getOldY(slot);
+    }
+
+    @Override
+    public char getRepresentation() {
+        return swarm == null ? representation : swarm.getRepresentation(slot);
+    }
+
+    @Override
+    public String toString() {
+        return Character.toString(getRepresentation());
     }
 
     /**
-     * Returns a direction that is biased by the player location. In general, the dynamic traps still move randomly,
-     * but have a higher chance to move towards the player rather than away from him. However, they still move randomly
-     * so they don't get stuck in corners and such.
+     * Checks whether the player stands on the trap and damages him if so. He will take a maximum of 1 damage per
+     * second.
      *
-     * @return chosen direction (where 0 => up, 1 => down, 2 => left, 3 => right)
+     * @param p a reference to the player object.
      */
-    private int chooseDirection() {
-        int direction;
-        int playerDeltaX = x - playerLocationX;
-        int playerDeltaY = y - playerLocationY;
-        if (Math.abs(playerDeltaX) > Math.abs(playerDeltaY)) {
-            if (playerDeltaX > 0) {
-                direction = 2; //go left
-            } else {
-                direction = 3; //go right
-            }
-        } else {
-            if (playerDeltaY > 0) {
-                direction = 0; //go up
-            } else {
-                direction = 1; //go down
-            }
-        }
-        if (random.nextInt(5) > 2) {
-            //throw in some random movement just for the natural movement and to prevent getting stuck in a corner
-            return random.nextInt(4);
+    @Override
+    public void modifyPlayer(PlayerGameObject p) {
+        if (swarm != null) {
+            swarm.modifyPlayer(slot, p);
         }
-        return direction;
     }
 
     /**
-     * Forward to the next frame of the animation if enough time has passed
+     * Moving traps are not updated one by one. The swarm of the level updates all of them at once.
+     *
+     * @param clock game clock of the level
      */
-    private void updateRepresentation() {
-        if (animationTimeHelper.getDeltaTime() > 100) {
-            animationStep++;
-            animationStep %= 4;
-            switch (animationStep) {
-                case 0:
-                    this.representation = '|';
-                    break;
-                case 1:
-                    this.representation = '/';
-                    break;
-                case 2:
-                    this.representation = '-';
-                    break;
-                case 3:
-                    this.representation = '\\';
-                    break;
-                default:
-            }
-            animationTimeHelper.reset();
-            this.needsUpdate = true;
-        }
+    @Override
+    public void update(GameClock clock) {
     }
 }
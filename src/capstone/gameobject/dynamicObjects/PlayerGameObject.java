@@ -1,16 +1,15 @@
 package capstone.gameobject.dynamicObjects;
 
-import capstone.DeltaTimeHelper;
+import capstone.GameClock;
 import capstone.ScoringHelper;
 import capstone.gameobject.dynamicObjects.BulletGameObject.Direction;
 import capstone.gameobject.staticObjects.StaticGameObject;
+import capstone.level.GameJournal;
 import capstone.level.Level;
 import capstone.level.LevelHelper;
 import com.googlecode.lanterna.input.Key;
 import com.googlecode.lanterna.terminal.Terminal;
 
-import java.util.ArrayList;
-
 
 /**
  * The player game object holds all the information about the player and is responsible for interacting, such as
@@ -21,10 +20,10 @@ public class PlayerGameObject extends DynamicGameObject {
     private boolean hasKey;
     private int score;
     private boolean hasReachedExit;
-    private boolean isPaused;
-    private final DeltaTimeHelper deltaTimeHelper;
-    private final DeltaTimeHelper bulletTimeHelper;
-    private final ArrayList<BulletGameObject> bullets;
+    private static final int BLINK_INTERVAL = 500; //milliseconds between two changes of the representation
+    private static final int FIRE_INTERVAL = 1000; //minimum milliseconds between two fired shurikens
+    private long nextBlink; //game time of the next change of the representation
+    private long nextShot; //game time at which the next shuriken can be fired
 
     /**
      * Creates a new player object at the given coordinate with the given parameters.
@@ -44,30 +43,11 @@ public class PlayerGameObject extends DynamicGameObject {
         this.score = ScoringHelper.getBaseValue();
         this.hasKey = hasKey;
         this.entityName = "Player";
-        this.deltaTimeHelper = new DeltaTimeHelper();
-        this.bulletTimeHelper = new DeltaTimeHelper();
-        this.bullets = new ArrayList<>();
+        this.nextBlink = currentTime() + BLINK_INTERVAL;
+        this.nextShot = currentTime() + FIRE_INTERVAL;
         this.savable = false;
     }
 
-    /**
-     * Whether the player is paused or not.
-     *
-     * @return is the player paused
-     */
-    public boolean isPaused() {
-        return isPaused;
-    }
-
-    /**
-     * Set the player pause state.
-     *
-     * @param paused whether player is paused
-     */
-    public void setPaused(boolean paused) {
-        isPaused = paused;
-    }
-
     /**
      * Pick up a key. Sets the variable so that the player now holds a key.
      */
@@ -75,6 +55,10 @@ public class PlayerGameObject extends DynamicGameObject {
         System.out.println("Has picked up key.");
         level.removeStaticGameObject(x, y);
         this.hasKey = true;
+        GameJournal journal = level.getJournal();
+        if (journal != null) {
+            journal.keyTaken();
+        }
     }
 
     /**
@@ -133,37 +117,26 @@ public class PlayerGameObject extends DynamicGameObject {
     }
 
     /**
-     * Updates the player variables. For now, only score will be deducted amounting to the time that has passed
-     * since the last call. The player thus loses 1000 score per second.
+     * Updates the player variables. For now, only score will be deducted amounting to the game time that has passed
+     * since the last call. The player thus loses 1000 score per second. While the game is paused, no game time passes,
+     * so the score stays the same.
      *
-     * @param deltatime time that has passed since last call
+     * @param clock game clock of the level
      */
     @Override
-    public void update(int deltatime) {
-        if (!isPaused) {
-            score -= deltatime;
-            if (score < 0) {
-                score = 0;
-            }
+    public void update(GameClock clock) {
+        score -= clock.getDeltaTime();
+        if (score < 0) {
+            score = 0;
         }
-        if (deltaTimeHelper.getDeltaTime() > 500) {
+        if (clock.getTime() >= nextBlink) {
             if (this.representation == 'X') {
                 this.representation = '+';
             } else {
                 this.representation = 'X';
             }
-            deltaTimeHelper.reset();
-        }
-        ArrayList<BulletGameObject> bulletsCopy = new ArrayList<>(bullets);
-        for (BulletGameObject b : bulletsCopy) {
-            if (b.isCollided()) {
-                //remove collided bullets from the players memory
-                bullets.remove(b);
-            }
-            if (b.getX() == x && b.getY() == y && b.isHasMoved()) {
-                //the player has walked into one of his own bullets and thus needs to be redrawn
-                this.needsUpdate = true;
-            }
+            nextBlink = clock.getTime() + BLINK_INTERVAL;
+            markChanged();
         }
     }
 
@@ -180,26 +153,22 @@ public class PlayerGameObject extends DynamicGameObject {
             switch (keystroke.getKind()) {
                 case ArrowUp:
                     if (LevelHelper.checkWalkable(level, x, y - 1, true)) {
-                        --y; //go up one
-                        needsUpdate = true;
+                        moveTo(x, y - 1); //go up one
                     }
                     break;
                 case ArrowDown:
                     if (LevelHelper.checkWalkable(level, x, y + 1, true)) {
-                        ++y; //go up one
-                        needsUpdate = true;
+                        moveTo(x, y + 1); //go down one
                     }
                     break;
                 case ArrowLeft:
                     if (LevelHelper.checkWalkable(level, x - 1, y, true)) {
-                        --x; //go up one
-                        needsUpdate = true;
+                        moveTo(x - 1, y); //go left one
                     }
                     break;
                 case ArrowRight:
                     if (LevelHelper.checkWalkable(level, x + 1, y, true)) {
-                        ++x; //go up one
-                        needsUpdate = true;
+                        moveTo(x + 1, y); //go right one
                     }
                     break;
                 default:
@@ -223,18 +192,16 @@ public class PlayerGameObject extends DynamicGameObject {
                             d = null;
                     }
                     if (d != null) {
-                        if (bulletTimeHelper.getDeltaTime() > 1000) {
+                        if (currentTime() >= nextShot) {
                             //limit the rate at which bullets can be fired
-                            BulletGameObject firedBullet = new BulletGameObject(x, y, level, d);
-                            bullets.add(firedBullet);
-                            level.addDynamicGameobject(firedBullet);
-                            bulletTimeHelper.reset();
+                            level.addDynamicGameobject(level.obtainBullet(x, y, d));
+                            nextShot = currentTime() + FIRE_INTERVAL;
                         }
                     }
 
             }
-            //redraw the player next tick
-            needsUpdate = true;
+            //redraw the player next frame
+            markChanged();
         }
     }
 
@@ -246,9 +213,13 @@ public class PlayerGameObject extends DynamicGameObject {
     public void modifyLives(int livesDelta) {
         System.out.println("Modifying lives " + livesDelta);
         lives += livesDelta;
-        StaticGameObject currentStandingGameObject = level.getStaticGameObjects()[x][y];
+        GameJournal journal = level.getJournal();
+        if (journal != null) {
+            journal.livesChanged(lives);
+        }
+        StaticGameObject currentStandingGameObject = level.getStaticGameObjects().get(x, y);
         if (currentStandingGameObject != null) {
-            if (level.getStaticGameObjects()[x][y].isPickup()) {
+            if (currentStandingGameObject.isPickup()) {
                 level.removeStaticGameObject(x, y);
             }
         }
@@ -270,6 +241,10 @@ public class PlayerGameObject extends DynamicGameObject {
      */
     public void modifyScore(int delta) {
         score += delta;
+        GameJournal journal = level.getJournal();
+        if (journal != null) {
+            journal.scoreChanged(getScore());
+        }
     }
 
     /**
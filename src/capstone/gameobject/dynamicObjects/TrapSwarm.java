@@ -0,0 +1,678 @@
+package capstone.gameobject.dynamicObjects;
+
+import capstone.GameClock;
+import capstone.ScoringHelper;
+import capstone.TimingWheel;
+import capstone.level.FlowField;
+import capstone.level.Level;
+import capstone.level.PathGraph;
+import capstone.level.LevelHelper;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The trap swarm holds the state of all moving traps of a level. Levels such as level_bench.properties contain
+ * thousands of moving traps, and keeping each of them as a separate object with its own timers and random number
+ * generator makes updating them slow. Instead, the swarm stores positions, timers, animation steps and random number
+ * generator states in primitive arrays (one entry per trap, called a slot) and updates all traps in one tight loop.
+ * <p>
+ * Every trap is still represented by a {@link MovingTrapGameObject}, which is merely a handle pointing to its slot.
+ * This way rendering, saving and collision checks can keep treating moving traps as regular dynamic game objects.
+ * Traps are removed by moving the last trap into the freed slot, so the arrays never contain holes.
+ * <p>
+ * Traps find their way to the player using the {@link FlowField} of the level, which is computed once per update
+ * (and only if the player has moved) instead of once per trap. On large levels, traps too far away for the flow field
+ * ask the {@link PathGraph} of the level instead.
+ * <p>
+ * Traps only act every now and then (a frame of their animation, a step), so the swarm does not look at every trap on
+ * every tick. Each slot is registered in a {@link TimingWheel} with the time of its next timer, and an update only
+ * handles the slots the wheel hands out.
+ * <p>
+ * An update consists of two phases. In the first phase, every due trap advances its timers and chooses its next field.
+ * This only reads shared state (the static tiles and the player position) and only writes to the slot of the trap
+ * itself, so the slots can be split into ranges that are updated on several cores at once. In the second phase, the
+ * moves are handed to the level (spatial index, dirty fields) one after another in slot order. Since every trap
+ * draws from its own random number generator, both modes produce exactly the same result for the same seed.
+ * <p>
+ * Most traps of a large level are far away from the player, where nobody sees them move. With the (optional) simulation
+ * level of detail enabled, the traps are sorted into three tiers every few ticks, based on their distance to the
+ * player: near traps (and all traps on screen) are fully simulated, traps in the middle band only wake up for their
+ * steps and skip the frames of their animation in between, and traps further away fall asleep: they are taken out of
+ * the wheel and not looked at all. When a trap wakes up again, it catches up on the steps it has missed in one go, see
+ * {@link #wake(int, long, int, int)}.
+ */
+public class TrapSwarm {
+    private static final int MOVE_INTERVAL = 500; //milliseconds between two steps of a trap
+    private static final int ANIMATION_INTERVAL = 100; //milliseconds between two frames of the animation
+    private static final int DAMAGE_COOLDOWN = 1000; //a trap hurts the player at most once per second
+    private static final char[] ANIMATION = {'|', '/', '-', '\\'};
+    private static final int PARALLEL_THRESHOLD = 8192; //below this amount of traps, splitting up is not worth it
+    private static final int PARTITION_SIZE = 2048; //amount of slots updated by a single task
+    public static final byte NEAR = 0;
+    public static final byte MIDDLE = 1;
+    public static final byte ASLEEP = 2;
+    private static final int CLASSIFY_INTERVAL = 20; //ticks between two sortings of the traps into tiers
+    private static final int MAX_CATCH_UP_STEPS = 32; //most steps a trap takes at once when it wakes up
+
+    private final Level level;
+    private final long seed;
+    private int seedCounter;
+    private int count;
+    private MovingTrapGameObject[] traps = new MovingTrapGameObject[16];
+    private int[] x = new int[16];
+    private int[] y = new int[16];
+    private int[] oldX = new int[16];
+    private int[] oldY = new int[16];
+    private long[] nextMove = new long[16]; //game time of the next step
+    private long[] nextAnimation = new long[16]; //game time of the next animation frame
+    private long[] nextDamage = new long[16]; //game time from which on the player can be hurt again
+    private byte[] animationStep = new byte[16];
+    private boolean[] changed = new boolean[16]; //the animation of the trap has advanced during the current update
+    private int[] randomState = new int[16];
+    private boolean[] moved = new boolean[16]; //the trap has moved during the current update
+    private byte[] tiers = new byte[16];
+    private final TimingWheel wheel = new TimingWheel(); //holds the slots of the traps that are awake
+    private int[] due = new int[16]; //slots handed out by the wheel for the current update, in ascending order
+    private int dueCount;
+    private boolean classified; //the tiers are up to date with the traps in the swarm
+    private int ticksSinceClassification;
+    private final int[] tierCounts = new int[3];
+    private boolean levelOfDetail;
+    private int nearRadius = 64;
+    private int middleRadius = 192;
+    private boolean parallelUpdate;
+
+    /**
+     * Creates an empty swarm for the given level.
+     *
+     * @param level level containing the traps
+     * @param seed  seed for the random movement of the traps
+     */
+    public TrapSwarm(Level level, long seed) {
+        this.level = level;
+        this.seed = seed;
+    }
+
+    /**
+     * Makes sure there is room for at least one more trap.
+     */
+    private void ensureCapacity() {
+        if (count < x.length) {
+            return;
+        }
+        int capacity = x.length * 2;
+        traps = Arrays.copyOf(traps, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        oldX = Arrays.copyOf(oldX, capacity);
+        oldY = Arrays.copyOf(oldY, capacity);
+        nextMove = Arrays.copyOf(nextMove, capacity);
+        nextAnimation = Arrays.copyOf(nextAnimation, capacity);
+        nextDamage = Arrays.copyOf(nextDamage, capacity);
+        animationStep = Arrays.copyOf(animationStep, capacity);
+        changed = Arrays.copyOf(changed, capacity);
+        randomState = Arrays.copyOf(randomState, capacity);
+        moved = Arrays.copyOf(moved, capacity);
+        tiers = Arrays.copyOf(tiers, capacity);
+    }
+
+    /**
+     * Adds a moving trap to the swarm. From now on, its state is held by the swarm.
+     *
+     * @param trap trap to be added
+     */
+    public void add(MovingTrapGameObject trap) {
+        ensureCapacity();
+        int slot = count++;
+        long now = level.getClock().getTime();
+        traps[slot] = trap;
+        x[slot] = trap.x;
+        y[slot] = trap.y;
+        oldX[slot] = trap.x;
+        oldY[slot] = trap.y;
+        randomState[slot] = createRandomState(seed + seedCounter++);
+        //spread the steps of the traps evenly, so they do not all move within the same frame
+        nextMove[slot] = now + 1 + nextRandom(slot, MOVE_INTERVAL);
+        nextAnimation[slot] = now + ANIMATION_INTERVAL;
+        nextDamage[slot] = now + DAMAGE_COOLDOWN;
+        animationStep[slot] = 0;
+        changed[slot] = false;
+        tiers[slot] = NEAR;
+        classified = false;
+        wheel.schedule(slot, getWakeUpTime(slot));
+        trap.attach(this, slot);
+    }
+
+    /**
+     * Removes a moving trap from the swarm. The last trap takes over the freed slot.
+     *
+     * @param trap trap to be removed
+     */
+    public void remove(MovingTrapGameObject trap) {
+        int slot = trap.getSlot();
+        if (slot < 0 || slot >= count || traps[slot] != trap) {
+            return;
+        }
+        trap.detach(x[slot], y[slot], oldX[slot], oldY[slot]);
+        int last = --count;
+        wheel.remove(slot);
+        if (slot != last) {
+            if (wheel.isScheduled(last)) {
+                wheel.schedule(slot, wheel.getTime(last));
+                wheel.remove(last);
+            }
+            traps[slot] = traps[last];
+            x[slot] = x[last];
+            y[slot] = y[last];
+            oldX[slot] = oldX[last];
+            oldY[slot] = oldY[last];
+            nextMove[slot] = nextMove[last];
+            nextAnimation[slot] = nextAnimation[last];
+            nextDamage[slot] = nextDamage[last];
+            animationStep[slot] = animationStep[last];
+            changed[slot] = changed[last];
+            randomState[slot] = randomState[last];
+            moved[slot] = moved[last];
+            tiers[slot] = tiers[last];
+            traps[slot].attach(this, slot);
+        }
+        traps[last] = null;
+        classified = false;
+    }
+
+    /**
+     * Updates all traps of the swarm whose time has come: advances their animations and lets them take a step in a
+     * player-biased random direction every half second. In parallel mode, large amounts of due traps are split up
+     * between the cores of the machine.
+     *
+     * @param clock game clock of the level
+     */
+    public void update(GameClock clock) {
+        long now = clock.getTime();
+        PlayerGameObject player = level.getPlayer();
+        int playerX = player.getX();
+        int playerY = player.getY();
+        level.getFlowField().update(playerX, playerY);
+        PathGraph pathGraph = level.getPathGraph();
+        if (pathGraph != null) {
+            pathGraph.update(playerX, playerY);
+        }
+        if (!classified || ++ticksSinceClassification >= CLASSIFY_INTERVAL) {
+            classify(now, playerX, playerY);
+        }
+        dueCount = wheel.advance(now);
+        if (due.length < dueCount) {
+            due = new int[wheel.getDue().length];
+        }
+        System.arraycopy(wheel.getDue(), 0, due, 0, dueCount);
+        Arrays.sort(due, 0, dueCount);
+        if (parallelUpdate && dueCount >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new UpdateTask(0, dueCount, now, playerX, playerY));
+        } else {
+            updateRange(0, dueCount, now, playerX, playerY);
+        }
+        //hand the moves to the level in slot order, so the result does not depend on the order of the tasks
+        for (int k = 0; k < dueCount; ++k) {
+            int i = due[k];
+            if (moved[i]) {
+                moved[i] = false;
+                level.dynamicGameObjectMoved(traps[i], oldX[i], oldY[i]);
+            } else if (changed[i]) {
+                level.dynamicGameObjectChanged(traps[i]);
+            }
+            changed[i] = false;
+            wheel.schedule(i, getWakeUpTime(i));
+        }
+    }
+
+    /**
+     * Gets the game time at which a trap next needs to be looked at. Traps in the middle band are only woken up for
+     * their steps, their animation is off screen anyway.
+     *
+     * @param i slot of the trap
+     * @return game time in milliseconds
+     */
+    private long getWakeUpTime(int i) {
+        return tiers[i] == MIDDLE ? nextMove[i] : Math.min(nextMove[i], nextAnimation[i]);
+    }
+
+    /**
+     * Sorts the traps into tiers by their distance to the player. Traps that fall asleep are taken out of the wheel,
+     * traps that wake up catch up on the steps they have missed and are put back in.
+     *
+     * @param now     current game time
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     */
+    private void classify(long now, int playerX, int playerY) {
+        Arrays.fill(tierCounts, 0);
+        for (int i = 0; i < count; ++i) {
+            byte tier = getTier(x[i], y[i], playerX, playerY);
+            if (tier == ASLEEP) {
+                wheel.remove(i);
+            } else if (tier != tiers[i]) {
+                if (tiers[i] == ASLEEP) {
+                    wake(i, now, playerX, playerY);
+                }
+                tiers[i] = tier;
+                wheel.schedule(i, getWakeUpTime(i));
+            }
+            tiers[i] = tier;
+            ++tierCounts[tier];
+        }
+        classified = true;
+        ticksSinceClassification = 0;
+    }
+
+    /**
+     * Gets the tier of a trap at the given position. Traps on screen are always near, no matter how far away from the
+     * player they are.
+     *
+     * @param trapX   x coordinate of the trap
+     * @param trapY   y coordinate of the trap
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     * @return NEAR, MIDDLE or ASLEEP
+     */
+    private byte getTier(int trapX, int trapY, int playerX, int playerY) {
+        if (!levelOfDetail) {
+            return NEAR;
+        }
+        int distance = Math.max(Math.abs(trapX - playerX), Math.abs(trapY - playerY));
+        if (distance <= nearRadius || level.isInFocus(trapX, trapY)) {
+            return NEAR;
+        }
+        return distance <= middleRadius ? MIDDLE : ASLEEP;
+    }
+
+    /**
+     * Lets a trap that has been asleep catch up on the steps it has missed. Simulating all of them would defeat the
+     * purpose of letting it sleep, so this is only an approximation: about three out of five steps of a trap head
+     * towards the player, while its random steps mostly cancel each other out. The trap thus takes three fifths of the
+     * missed steps straight towards the player (at most MAX_CATCH_UP_STEPS), and stops early at an obstacle. No random
+     * numbers are drawn, so the outcome does not depend on how long the trap has slept in between.
+     *
+     * @param i       slot of the trap
+     * @param now     current game time
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     */
+    private void wake(int i, long now, int playerX, int playerY) {
+        if (now < nextMove[i]) {
+            return;
+        }
+        long missed = (now - nextMove[i]) / MOVE_INTERVAL + 1;
+        //the trap keeps stepping at the same point within the interval as before
+        nextMove[i] += missed * MOVE_INTERVAL;
+        int steps = (int) Math.min(missed * 3 / 5, MAX_CATCH_UP_STEPS);
+        int startX = x[i];
+        int startY = y[i];
+        for (int s = 0; s < steps; ++s) {
+            int newX = x[i];
+            int newY = y[i];
+            switch (getGuidedDirection(i, playerX, playerY)) {
+                case 0:
+                    --newY;
+                    break;
+                case 1:
+                    ++newY;
+                    break;
+                case 2:
+                    --newX;
+                    break;
+                case 3:
+                    ++newX;
+                    break;
+            }
+            if (!LevelHelper.checkWalkable(level, newX, newY, false)) {
+                break;
+            }
+            x[i] = newX;
+            y[i] = newY;
+        }
+        if (x[i] != startX || y[i] != startY) {
+            //the level only needs to know where the trap was before falling asleep
+            oldX[i] = startX;
+            oldY[i] = startY;
+            level.dynamicGameObjectMoved(traps[i], startX, startY);
+        }
+    }
+
+    /**
+     * Updates the timers, animations and positions of a range of the due slots. Only the given slots are written to,
+     * so disjoint ranges can be updated at the same time.
+     *
+     * @param from    first index into the due slots (inclusive)
+     * @param to      last index into the due slots (exclusive)
+     * @param now     current game time
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     */
+    private void updateRange(int from, int to, long now, int playerX, int playerY) {
+        for (int k = from; k < to; ++k) {
+            int i = due[k];
+            if (now >= nextAnimation[i]) {
+                animationStep[i] = (byte) ((animationStep[i] + 1) & 3);
+                nextAnimation[i] = now + ANIMATION_INTERVAL;
+                changed[i] = true;
+            }
+            if (now >= nextMove[i]) {
+                nextMove[i] = now + MOVE_INTERVAL;
+                step(i, playerX, playerY);
+            }
+        }
+    }
+
+    /**
+     * Lets the trap in the given slot take a single step. If the chosen field is not walkable, the trap stays.
+     * The level is not told about the move yet, see {@link #update(GameClock)}.
+     *
+     * @param i       slot of the trap
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     */
+    private void step(int i, int playerX, int playerY) {
+        int currentX = x[i];
+        int currentY = y[i];
+        oldX[i] = currentX;
+        oldY[i] = currentY;
+        int newX = currentX;
+        int newY = currentY;
+        switch (chooseDirection(i, playerX, playerY)) {
+            case 0:
+                //up
+                --newY;
+                break;
+            case 1:
+                //down
+                ++newY;
+                break;
+            case 2:
+                //left
+                --newX;
+                break;
+            case 3:
+                //right
+                ++newX;
+                break;
+        }
+        if (LevelHelper.checkWalkable(level, newX, newY, false)) {
+            x[i] = newX;
+            y[i] = newY;
+            moved[i] = true;
+        }
+    }
+
+    /**
+     * Returns a direction that is biased by the player location. In general, the dynamic traps still move randomly,
+     * but have a higher chance to move towards the player rather than away from him. Near the player, they follow the
+     * flow field and thus find their way around walls; further away, they follow the path graph if the level has one,
+     * and otherwise simply head in the direction of the player.
+     * However, they still move randomly for a more natural movement.
+     *
+     * @param i       slot of the trap
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     * @return chosen direction (where 0 => up, 1 => down, 2 => left, 3 => right)
+     */
+    private int chooseDirection(int i, int playerX, int playerY) {
+        int direction = getGuidedDirection(i, playerX, playerY);
+        if (nextRandom(i, 5) > 2) {
+            //throw in some random movement just for the natural movement and to prevent getting stuck in a corner
+            return nextRandom(i, 4);
+        }
+        return direction;
+    }
+
+    /**
+     * Returns the direction leading a trap towards the player: the one given by the flow field near the player, by the
+     * path graph further away, and straight towards the player if neither knows the way.
+     *
+     * @param i       slot of the trap
+     * @param playerX x coordinate of the player
+     * @param playerY y coordinate of the player
+     * @return direction (where 0 => up, 1 => down, 2 => left, 3 => right)
+     */
+    private int getGuidedDirection(int i, int playerX, int playerY) {
+        int direction = level.getFlowField().getDirection(x[i], y[i]);
+        PathGraph pathGraph = level.getPathGraph();
+        if (direction == FlowField.NO_DIRECTION && pathGraph != null) {
+            direction = pathGraph.getDirection(x[i], y[i]);
+        }
+        if (direction == FlowField.NO_DIRECTION) {
+            int playerDeltaX = x[i] - playerX;
+            int playerDeltaY = y[i] - playerY;
+            if (Math.abs(playerDeltaX) > Math.abs(playerDeltaY)) {
+                direction = playerDeltaX > 0 ? 2 : 3;
+            } else {
+                direction = playerDeltaY > 0 ? 0 : 1;
+            }
+        }
+        return direction;
+    }
+
+    /**
+     * Creates a non-zero starting state for the random number generator of a trap.
+     *
+     * @param value value to derive the state from
+     * @return random number generator state
+     */
+    private static int createRandomState(long value) {
+        //SplitMix64 finalizer, spreads consecutive values over the whole range
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        int state = (int) (value ^ (value >>> 31));
+        return state != 0 ? state : 0x9e3779b9;
+    }
+
+    /**
+     * Draws a random number from the generator of a trap. Each trap has its own xorshift generator, which only takes
+     * up a single int.
+     *
+     * @param i     slot of the trap
+     * @param bound upper bound (exclusive)
+     * @return random number between 0 and bound - 1
+     */
+    private int nextRandom(int i, int bound) {
+        int state = randomState[i];
+        state ^= state << 13;
+        state ^= state >>> 17;
+        state ^= state << 5;
+        randomState[i] = state;
+        return (state >>> 1) % bound;
+    }
+
+    /**
+     * Checks whether the player stands on the trap in the given slot and damages him if so. He will take a maximum of
+     * 1 damage per second and trap.
+     *
+     * @param i slot of the trap
+     * @param p a reference to the player object.
+     */
+    void modifyPlayer(int i, PlayerGameObject p) {
+        if (x[i] == p.getX() && y[i] == p.getY()) {
+            long now = level.getClock().getTime();
+            if (now >= nextDamage[i]) {
+                nextDamage[i] = now + DAMAGE_COOLDOWN;
+                p.modifyLives(-1);
+                p.modifyScore(-ScoringHelper.getBaseValue() / 5);
+            }
+            //Redraw the field of the player upon collision
+            p.markChanged();
+        }
+    }
+
+    /**
+     * Whether traps far away from the player are simulated less often or not at all.
+     *
+     * @return simulation level of detail is enabled
+     */
+    public boolean isLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * Enables or disables the simulation level of detail. Without it, every trap is fully simulated; it is off unless
+     * enabled here.
+     *
+     * @param levelOfDetail whether traps far away from the player are simulated less
+     */
+    public void setLevelOfDetail(boolean levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+        classified = false;
+    }
+
+    /**
+     * Sets the distances to the player (in fields, along the longer axis) up to which traps are fully simulated and up
+     * to which they are simulated less often. Traps further away fall asleep.
+     *
+     * @param nearRadius   traps up to this distance are near
+     * @param middleRadius traps up to this distance are in the middle band (at least nearRadius)
+     */
+    public void setLevelOfDetailRadii(int nearRadius, int middleRadius) {
+        this.nearRadius = nearRadius;
+        this.middleRadius = Math.max(nearRadius, middleRadius);
+        classified = false;
+    }
+
+    /**
+     * Gets the amount of traps in a tier, as of the last time the traps were sorted into tiers.
+     *
+     * @param tier NEAR, MIDDLE or ASLEEP
+     * @return amount of traps
+     */
+    public int getTierCount(byte tier) {
+        return tierCounts[tier];
+    }
+
+    /**
+     * Gets the amount of traps waiting in the timing wheel of the swarm, i.e. the traps that are awake.
+     *
+     * @return queue depth of the wheel
+     */
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+
+    /**
+     * Gets the longest time a trap handed out by the last update had been overdue.
+     *
+     * @return lateness in milliseconds
+     */
+    public long getLateness() {
+        return wheel.getLateness();
+    }
+
+    /**
+     * Whether large swarms are updated on several cores at once.
+     *
+     * @return parallel update is enabled
+     */
+    public boolean isParallelUpdate() {
+        return parallelUpdate;
+    }
+
+    /**
+     * Enables or disables updating large swarms on several cores at once. This does not change the outcome of an
+     * update, only how fast it is computed.
+     *
+     * @param parallelUpdate whether the update should be split up
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        this.parallelUpdate = parallelUpdate;
+    }
+
+    /**
+     * Gets the amount of traps in the swarm
+     *
+     * @return amount of traps
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the trap in the given slot
+     *
+     * @param i slot of the trap
+     * @return moving trap
+     */
+    public MovingTrapGameObject getTrap(int i) {
+        return traps[i];
+    }
+
+    /**
+     * Gets the slot of a trap. Since removing a trap moves the last trap into the freed slot, two swarms with the same
+     * traps in the same slots stay identical as long as the same slots are removed in the same order.
+     *
+     * @param trap moving trap
+     * @return slot of the trap, or -1 if it is not part of the swarm
+     */
+    public int indexOf(MovingTrapGameObject trap) {
+        int slot = trap.getSlot();
+        return slot >= 0 && slot < count && traps[slot] == trap ? slot : -1;
+    }
+
+    int getX(int i) {
+        return x[i];
+    }
+
+    int getY(int i) {
+        return y[i];
+    }
+
+    int getOldX(int i) {
+        return oldX[i];
+    }
+
+    int getOldY(int i) {
+        return oldY[i];
+    }
+
+    char getRepresentation(int i) {
+        return ANIMATION[animationStep[i]];
+    }
+
+    /**
+     * Updates a range of the due slots, splitting it up into halves until the ranges are small enough.
+     */
+    private class UpdateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final long now;
+        private final int playerX;
+        private final int playerY;
+
+        /**
+         * Creates a task for a range of the due slots.
+         *
+         * @param from    first index into the due slots (inclusive)
+         * @param to      last index into the due slots (exclusive)
+         * @param now     current game time
+         * @param playerX x coordinate of the player
+         * @param playerY y coordinate of the player
+         */
+        UpdateTask(int from, int to, long now, int playerX, int playerY) {
+            this.from = from;
+            this.to = to;
+            this.now = now;
+            this.playerX = playerX;
+            this.playerY = playerY;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARTITION_SIZE) {
+                updateRange(from, to, now, playerX, playerY);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new UpdateTask(from, middle, now, playerX, playerY),
+                    new UpdateTask(middle, to, now, playerX, playerY));
+        }
+    }
+}
@@ -4,7 +4,6 @@ import capstone.gameobject.dynamicObjects.PlayerGameObject;
 import com.googlecode.lanterna.terminal.Terminal;
 
 public class HealthGameObject extends StaticGameObject {
-    private boolean taken = false;
 
     /**
      * Creates a new health game object with the given representation
@@ -20,15 +19,13 @@ public class HealthGameObject extends StaticGameObject {
     }
 
     /**
-     * Adds a life to the player character
+     * Adds a life to the player character. Since the health kit is a pickup, modifying the lives removes it from the
+     * level, so this only ever happens once per health kit.
      *
      * @param p a reference to the player object.
      */
     @Override
     public void modifyPlayer(PlayerGameObject p) {
-        if (!taken) {
-            p.modifyLives(1);
-            taken = true;
-        }
+        p.modifyLives(1);
     }
 }
@@ -5,7 +5,6 @@ import capstone.gameobject.dynamicObjects.PlayerGameObject;
 import com.googlecode.lanterna.terminal.Terminal;
 
 public class KeyGameObject extends StaticGameObject {
-    private boolean taken = false;
 
     /**
      * Constructs a new key game object at the given coordinates in the given level.
@@ -23,19 +22,14 @@ public class KeyGameObject extends StaticGameObject {
 
     /**
      * Checks whether a player is within range (read: standing on the key position) and adds the key to the player's
-     * inventory.
+     * inventory. Taking the key removes it from the level, so this only ever happens once per key.
      *
      * @param p a reference to the player object.
      */
     @Override
     public void modifyPlayer(PlayerGameObject p) {
-        if (!taken) {
-            p.takeKey();
-            p.modifyScore(ScoringHelper.getBaseValue() / 2);
-            taken = true;
-            this.representation = ' ';
-            this.backgroundColor = Terminal.Color.DEFAULT;
-        }
+        p.takeKey();
+        p.modifyScore(ScoringHelper.getBaseValue() / 2);
     }
 
 }
@@ -1,14 +1,12 @@
 package capstone.gameobject.staticObjects;
 
-import capstone.DeltaTimeHelper;
 import capstone.ScoringHelper;
 import capstone.gameobject.dynamicObjects.PlayerGameObject;
+import capstone.level.Level;
 import com.googlecode.lanterna.terminal.Terminal;
 
 public class StaticTrapGameObject extends StaticGameObject {
 
-    private final DeltaTimeHelper d;
-
     /**
      * Creates a new static trap with the according terminal representation.
      * A static trap is player walkable, but not computer walkable (to prevent damage stacking).
@@ -20,21 +18,21 @@ public class StaticTrapGameObject extends StaticGameObject {
         this.entityName = "Static Trap";
         this.playerWalkable = true;
         this.computerWalkable = false;
-        d = new DeltaTimeHelper();
-        d.reset();
     }
 
     /**
      * A static trap deducts a maximum of one life per second when the player stands on it.
+     * Since one instance is shared by all static traps of a level, the time of the last damage is kept per field by
+     * the tile grid of the level.
      *
      * @param p Player object to be modified
      */
     @Override
     public void modifyPlayer(PlayerGameObject p) {
-        if (d.getDeltaTime() > 1000) {
+        Level level = p.getLevel();
+        if (level.getStaticGameObjects().checkCooldown(p.getX(), p.getY(), 1000, level.getClock().getTime())) {
             p.modifyLives(-1);
             p.modifyScore(-ScoringHelper.getBaseValue() / 5);
-            d.reset();
         }
     }
 }
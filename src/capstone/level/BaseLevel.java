@@ -0,0 +1,139 @@
+package capstone.level;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A base level is the level file a level was started from, as it was when it was read. Saves refer to it instead of
+ * containing the whole level (see {@link DiffLevelFile}), so they remember its path and a hash of its content, which
+ * tells whether the file is still the same when the save is read.
+ */
+class BaseLevel {
+    static final int HASH_LENGTH = 32;
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private byte[] hash; //calculated once it is needed
+
+    /**
+     * Creates a base level.
+     *
+     * @param file         level file
+     * @param length       length of the file when it was read
+     * @param lastModified modification date of the file when it was read
+     */
+    private BaseLevel(File file, long length, long lastModified) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Creates a base level for a level file in its current state.
+     *
+     * @param file level file
+     * @return the base level
+     * @throws IOException in case the canonical path of the file could not be determined
+     */
+    static BaseLevel of(File file) throws IOException {
+        return new BaseLevel(file.getCanonicalFile(), file.length(), file.lastModified());
+    }
+
+    /**
+     * Gets the level file.
+     *
+     * @return level file (canonical path)
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the length of the file when it was read.
+     *
+     * @return length in bytes
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the modification date of the file when it was read.
+     *
+     * @return modification date
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Whether the file is still the same as when it was read, judging by its length and modification date.
+     *
+     * @return file is unchanged
+     */
+    boolean isUnchanged() {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Gets the SHA-256 hash of the content of the file. It is calculated on the first call.
+     *
+     * @return hash of the content
+     * @throws IOException in case the file could not be read or has changed since it was read
+     */
+    synchronized byte[] getHash() throws IOException {
+        if (hash == null) {
+            if (!isUnchanged()) {
+                throw new IOException(file + " has changed since it was read");
+            }
+            hash = calculateHash(file);
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether the file is the one a save refers to. If length and modification date are the same, the file is
+     * assumed to be unchanged; otherwise (e.g. after it was copied) its content has to have the same hash.
+     *
+     * @param savedLength       length of the file the save refers to
+     * @param savedLastModified modification date of the file the save refers to
+     * @param savedHash         hash of the content of the file the save refers to
+     * @return file is the one the save refers to
+     * @throws IOException in case the file could not be read
+     */
+    boolean matches(long savedLength, long savedLastModified, byte[] savedHash) throws IOException {
+        if (length != savedLength) {
+            return false;
+        }
+        return lastModified == savedLastModified || Arrays.equals(getHash(), savedHash);
+    }
+
+    /**
+     * Calculates the SHA-256 hash of the content of a file.
+     *
+     * @param file file to be hashed
+     * @return hash of the content
+     * @throws IOException in case the file could not be read
+     */
+    private static byte[] calculateHash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
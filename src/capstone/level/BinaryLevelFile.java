@@ -0,0 +1,291 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
+import capstone.gameobject.dynamicObjects.PlayerGameObject;
+import capstone.gameobject.dynamicObjects.TrapSwarm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+
+/**
+ * The binary level file is the compact alternative to the properties format. Instead of one "x,y=type" line per
+ * field, it consists of three sections:
+ * <ul>
+ * <li>a header of fixed length: magic number, format version, size of the level, player information and the amount
+ * of moving traps</li>
+ * <li>the static tiles, chunk by chunk (see {@link TileChunk}). Every field takes up half a byte, so every chunk has
+ * the same length and can be found without reading anything else.</li>
+ * <li>the moving traps, as pairs of coordinates</li>
+ * </ul>
+ * Since the chunks are at fixed positions, the binary level file also serves as the {@link ChunkSource} of the level
+ * read from it: only the header and the traps are read upfront, the tiles are read once they are needed.
+ * <p>
+ * Properties levels that are larger than a few chunks get a binary copy right next to them (ending in .chunks),
+ * which is used instead of parsing the properties file again the next time. Such a copy remembers the length and the
+ * modification date of the properties file in its header, so changes to the properties file are noticed.
+ */
+public class BinaryLevelFile implements ChunkSource {
+    public static final String ENDING = ".level";
+    private static final String CACHE_ENDING = ".chunks";
+    private static final int MAGIC = 0x434c564c; //"CLVL"
+    private static final int VERSION = 1;
+    //magic, version, source length and date, width, height, flags, player, trap count
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 4 + 4 + 1 + 4 * 4 + 1 + 4;
+    private static final int PACKED_CHUNK_LENGTH = TileChunk.AREA / 2;
+    private static final int FLAG_SAVE = 1; //the level contains the state of a player
+
+    private final File file;
+    private final int chunksX;
+
+    /**
+     * Creates a chunk source reading from a binary level file.
+     *
+     * @param file  binary level file
+     * @param width width of the level in fields
+     */
+    private BinaryLevelFile(File file, int width) {
+        this.file = file;
+        this.chunksX = (width + TileChunk.MASK) >> TileChunk.SHIFT;
+    }
+
+    /**
+     * Checks whether a file is a binary level file by looking at its first bytes.
+     *
+     * @param file file to check
+     * @return file is a binary level file
+     * @throws IOException in case the file could not be read
+     */
+    public static boolean isBinaryLevel(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Reads a level from a binary level file. The static tiles are not read, instead the tile grid of the level is
+     * backed by the file.
+     *
+     * @param file binary level file
+     * @return the level
+     * @throws IOException in case the file could not be read or is not a binary level file
+     */
+    public static Level readLevel(File file) throws IOException {
+        return read(file, null);
+    }
+
+    /**
+     * Reads a properties level from its binary copy, if there is an up to date one. An outdated or unreadable copy is
+     * simply written again after the properties level has been read.
+     *
+     * @param levelFile properties level file
+     * @return the level, or null if there is no up to date binary copy
+     */
+    static Level readCachedLevel(File levelFile) {
+        File cacheFile = new File(levelFile.getPath() + CACHE_ENDING);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try {
+            return read(cacheFile, levelFile);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a level from a binary level file.
+     *
+     * @param file   binary level file
+     * @param source properties file the binary file is a copy of, or null if it is not a copy
+     * @return the level, or null if the binary file is an outdated copy of the source
+     * @throws IOException in case the file could not be read or is not a binary level file
+     */
+    private static Level read(File file, File source) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a binary level file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has the unsupported format version " + version);
+            }
+            long sourceLength = in.readLong();
+            long sourceModified = in.readLong();
+            if (source != null && (sourceLength != source.length() || sourceModified != source.lastModified())) {
+                return null;
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            int flags = in.readByte();
+            int playerX = in.readInt();
+            int playerY = in.readInt();
+            int playerLives = in.readInt();
+            int playerScore = in.readInt();
+            boolean playerHasKey = in.readBoolean();
+            int traps = in.readInt();
+
+            Level level = new Level(width, height);
+            level.setPlayer(new PlayerGameObject(playerX, playerY, playerLives, level, playerHasKey));
+            level.getPlayer().setScore(playerScore);
+            level.setSave((flags & FLAG_SAVE) != 0);
+
+            //skip the tiles, they are read once they are needed
+            in.seek(HEADER_LENGTH + (long) level.getStaticGameObjects().getChunkCount() * PACKED_CHUNK_LENGTH);
+            DataInputStream entities = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in.getChannel())));
+            for (int i = 0; i < traps; ++i) {
+                int x = entities.readInt();
+                int y = entities.readInt();
+                level.addDynamicGameobject(new MovingTrapGameObject(x, y, level));
+            }
+            level.getStaticGameObjects().setChunkSource(new BinaryLevelFile(file, width));
+            return level;
+        }
+    }
+
+    /**
+     * Writes a level to a binary level file. Like a properties save, the file always counts as a save containing the
+     * state of the player. The file is written under a temporary name first and then renamed, so there is never a
+     * half written level file. Afterwards, the tile grid of the level is backed by the new file.
+     *
+     * @param level level to be written
+     * @param file  binary level file
+     * @throws IOException in case the file could not be written
+     */
+    public static void writeLevel(Level level, File file) throws IOException {
+        write(level, file, true, 0, 0);
+        //the file now holds exactly the tiles of the grid, so it can serve as its source
+        level.getStaticGameObjects().setChunkSource(new BinaryLevelFile(file, level.getLevelWidth()));
+    }
+
+    /**
+     * Writes a snapshot of a level to a binary level file, see {@link LevelInputOutput#writeLevelAsync}. Unlike
+     * {@link #writeLevel(Level, File)}, the grid of the snapshot is not backed by the new file afterwards: its chunks
+     * are shared with the level the snapshot was taken of, which must not be told that they are on disk now.
+     *
+     * @param snapshot snapshot of a level
+     * @param file     binary level file
+     * @throws IOException in case the file could not be written
+     */
+    static void writeSnapshot(Level snapshot, File file) throws IOException {
+        write(snapshot, file, true, 0, 0);
+    }
+
+    /**
+     * Writes the binary copy of a freshly read properties level. If the copy cannot be written, the level simply stays
+     * in memory completely.
+     *
+     * @param levelFile properties level file the level was read from
+     * @param level     the level read from the file
+     */
+    static void writeCachedLevel(File levelFile, Level level) {
+        File cacheFile = new File(levelFile.getPath() + CACHE_ENDING);
+        try {
+            write(level, cacheFile, level.isSave(), levelFile.length(), levelFile.lastModified());
+            level.getStaticGameObjects().setChunkSource(new BinaryLevelFile(cacheFile, level.getLevelWidth()));
+        } catch (IOException ex) {
+            //the level is kept in memory completely
+        }
+    }
+
+    /**
+     * Writes a level to a binary level file. The file is written under a temporary name first and then renamed.
+     *
+     * @param level          level to be written
+     * @param file           binary level file
+     * @param save           whether the file counts as a save
+     * @param sourceLength   length of the properties file the binary file is a copy of (0 if it is not a copy)
+     * @param sourceModified modification date of the properties file the binary file is a copy of (0 if not a copy)
+     * @throws IOException in case the file could not be written
+     */
+    private static void write(Level level, File file, boolean save, long sourceLength, long sourceModified)
+            throws IOException {
+        TileGrid grid = level.getStaticGameObjects();
+        PlayerGameObject player = level.getPlayer();
+        TrapSwarm trapSwarm = level.getTrapSwarm();
+        int chunksX = (grid.getWidth() + TileChunk.MASK) >> TileChunk.SHIFT;
+        int chunksY = (grid.getHeight() + TileChunk.MASK) >> TileChunk.SHIFT;
+        byte[] packed = new byte[PACKED_CHUNK_LENGTH];
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(grid.getWidth());
+            out.writeInt(grid.getHeight());
+            out.writeByte(save ? FLAG_SAVE : 0);
+            out.writeInt(player.getX());
+            out.writeInt(player.getY());
+            out.writeInt(player.getLives());
+            out.writeInt(player.getScore());
+            out.writeBoolean(player.isHasKey());
+            out.writeInt(trapSwarm.size());
+            for (int chunkY = 0; chunkY < chunksY; ++chunkY) {
+                for (int chunkX = 0; chunkX < chunksX; ++chunkX) {
+                    for (int i = 0; i < TileChunk.AREA; i += 2) {
+                        //fields outside of the level are stored as empty
+                        int x = (chunkX << TileChunk.SHIFT) + (i & TileChunk.MASK);
+                        int y = (chunkY << TileChunk.SHIFT) + (i >> TileChunk.SHIFT);
+                        packed[i >> 1] = (byte) (pack(grid.getTileType(x, y)) << 4 | pack(grid.getTileType(x + 1, y)));
+                    }
+                    out.write(packed);
+                }
+            }
+            for (int i = 0; i < trapSwarm.size(); ++i) {
+                out.writeInt(trapSwarm.getTrap(i).getX());
+                out.writeInt(trapSwarm.getTrap(i).getY());
+            }
+        }
+        LevelInputOutput.replaceFile(temporaryFile, file);
+    }
+
+    /**
+     * Packs a tile type code into half a byte.
+     *
+     * @param type tile type code
+     * @return packed value (0 for empty fields)
+     */
+    private static int pack(byte type) {
+        return (type + 1) & 0xf;
+    }
+
+    /**
+     * Unpacks a tile type code from half a byte.
+     *
+     * @param packed packed value
+     * @return tile type code
+     */
+    private static byte unpack(int packed) {
+        //anything that is not a known type is treated as empty
+        return packed > TileGrid.HEALTH + 1 ? TileGrid.EMPTY : (byte) (packed - 1);
+    }
+
+    /**
+     * Reads the tiles of a chunk from the file.
+     *
+     * @param chunkX x coordinate of the chunk (in chunks, not fields)
+     * @param chunkY y coordinate of the chunk (in chunks, not fields)
+     * @param tiles  array of 64x64 entries to be filled with the tile type codes, row by row
+     * @throws IOException in case the chunk could not be read
+     */
+    @Override
+    public void readChunk(int chunkX, int chunkY, byte[] tiles) throws IOException {
+        byte[] packed = new byte[PACKED_CHUNK_LENGTH];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(HEADER_LENGTH + ((long) chunkY * chunksX + chunkX) * PACKED_CHUNK_LENGTH);
+            in.readFully(packed);
+        }
+        for (int i = 0; i < PACKED_CHUNK_LENGTH; ++i) {
+            tiles[i << 1] = unpack((packed[i] >> 4) & 0xf);
+            tiles[(i << 1) + 1] = unpack(packed[i] & 0xf);
+        }
+    }
+}
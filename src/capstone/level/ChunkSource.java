@@ -0,0 +1,20 @@
+package capstone.level;
+
+import java.io.IOException;
+
+/**
+ * A chunk source provides the static tiles of a level chunk by chunk, so that a {@link TileGrid} only needs to keep the
+ * chunks in memory that are actually used.
+ */
+public interface ChunkSource {
+
+    /**
+     * Reads the tiles of a chunk.
+     *
+     * @param chunkX x coordinate of the chunk (in chunks, not fields)
+     * @param chunkY y coordinate of the chunk (in chunks, not fields)
+     * @param tiles  array of 64x64 entries to be filled with the tile type codes, row by row
+     * @throws IOException in case the chunk could not be read
+     */
+    void readChunk(int chunkX, int chunkY, byte[] tiles) throws IOException;
+}
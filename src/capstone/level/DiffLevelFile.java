@@ -0,0 +1,165 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
+import capstone.gameobject.dynamicObjects.PlayerGameObject;
+import capstone.gameobject.dynamicObjects.TrapSwarm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A diff level file is a save that only contains what has changed since the level was started: a reference to the
+ * level file it was started from (see {@link BaseLevel}), the fields that differ from it, the moving traps and the
+ * player information. Since a save usually differs from its level by a handful of fields, it is a lot smaller and
+ * faster to write than a complete level. To read it, the base level is read (usually from the {@link LevelCache}) and
+ * the differences are applied to it.
+ * <p>
+ * The moving traps are stored completely, since they keep walking around and hardly any of them is still where it
+ * started.
+ */
+class DiffLevelFile {
+    private static final int MAGIC = 0x43444946; //"CDIF"
+    private static final int VERSION = 1;
+
+    /**
+     * Checks whether a file is a diff level file by looking at its first bytes.
+     *
+     * @param file file to check
+     * @return file is a diff level file
+     * @throws IOException in case the file could not be read
+     */
+    static boolean isDiffLevel(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Reads a save from a diff level file by applying it to its base level.
+     *
+     * @param file diff level file
+     * @return the level
+     * @throws IOException in case the file or its base level could not be read, or the base level has changed
+     */
+    static Level readLevel(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a diff level file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has the unsupported format version " + version);
+            }
+            BaseLevel base = BaseLevel.of(new File(in.readUTF()));
+            long baseLength = in.readLong();
+            long baseModified = in.readLong();
+            byte[] baseHash = new byte[BaseLevel.HASH_LENGTH];
+            in.readFully(baseHash);
+            if (!base.getFile().isFile() || !base.matches(baseLength, baseModified, baseHash)) {
+                throw new IOException(file + " is based on " + base.getFile() + ", which has changed or is missing");
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            int playerX = in.readInt();
+            int playerY = in.readInt();
+            int playerLives = in.readInt();
+            int playerScore = in.readInt();
+            boolean playerHasKey = in.readBoolean();
+            int changes = in.readInt();
+            int traps = in.readInt();
+
+            Level level = LevelInputOutput.readBaseLevel(base.getFile());
+            if (level.getLevelWidth() != width || level.getLevelHeight() != height) {
+                throw new IOException(file + " does not fit the size of " + base.getFile());
+            }
+            for (int i = 0; i < changes; ++i) {
+                int x = in.readInt();
+                int y = in.readInt();
+                level.setTileType(x, y, in.readByte());
+            }
+            //the traps and the player of the base level are replaced by the saved ones
+            TrapSwarm trapSwarm = level.getTrapSwarm();
+            while (trapSwarm.size() > 0) {
+                level.removeDynamicGameObject(trapSwarm.getTrap(trapSwarm.size() - 1));
+            }
+            for (int i = 0; i < traps; ++i) {
+                int x = in.readInt();
+                int y = in.readInt();
+                level.addDynamicGameobject(new MovingTrapGameObject(x, y, level));
+            }
+            if (level.getPlayer() != null) {
+                level.removeDynamicGameObject(level.getPlayer());
+            }
+            level.setPlayer(new PlayerGameObject(playerX, playerY, playerLives, level, playerHasKey));
+            level.getPlayer().setScore(playerScore);
+            level.setSave(true);
+            level.setBase(base);
+            return level;
+        }
+    }
+
+    /**
+     * Writes a level as a diff against its base level. The file is written under a temporary name first and then
+     * renamed.
+     *
+     * @param level level to be written, its base level must be known and unchanged
+     * @param file  diff level file
+     * @throws IOException in case the file or the base level could not be read or written
+     */
+    static void writeLevel(Level level, File file) throws IOException {
+        BaseLevel base = level.getBase();
+        byte[] baseHash = base.getHash();
+        Level baseLevel = LevelInputOutput.readBaseLevel(base.getFile());
+        int[] changes = level.getStaticGameObjects().diff(baseLevel.getStaticGameObjects());
+        PlayerGameObject player = level.getPlayer();
+        TrapSwarm trapSwarm = level.getTrapSwarm();
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(base.getFile().getPath());
+            out.writeLong(base.getLength());
+            out.writeLong(base.getLastModified());
+            out.write(baseHash);
+            out.writeInt(level.getLevelWidth());
+            out.writeInt(level.getLevelHeight());
+            out.writeInt(player.getX());
+            out.writeInt(player.getY());
+            out.writeInt(player.getLives());
+            out.writeInt(player.getScore());
+            out.writeBoolean(player.isHasKey());
+            out.writeInt(changes.length / 3);
+            out.writeInt(trapSwarm.size());
+            for (int i = 0; i < changes.length; i += 3) {
+                out.writeInt(changes[i]);
+                out.writeInt(changes[i + 1]);
+                out.writeByte(changes[i + 2]);
+            }
+            for (int i = 0; i < trapSwarm.size(); ++i) {
+                out.writeInt(trapSwarm.getTrap(i).getX());
+                out.writeInt(trapSwarm.getTrap(i).getY());
+            }
+        }
+        LevelInputOutput.replaceFile(temporaryFile, file);
+    }
+
+    /**
+     * Whether a level can be saved as a diff to the given file: its base level has to be known and unchanged, and it
+     * must not be the file that is about to be overwritten.
+     *
+     * @param level level to be saved
+     * @param file  file to be written
+     * @return level can be saved as a diff
+     * @throws IOException in case the canonical path of the file could not be determined
+     */
+    static boolean canWrite(Level level, File file) throws IOException {
+        BaseLevel base = level.getBase();
+        return base != null && base.isUnchanged() && !base.getFile().equals(file.getCanonicalFile());
+    }
+}
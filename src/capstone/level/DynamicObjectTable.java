@@ -0,0 +1,114 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.DynamicGameObject;
+
+import java.util.Arrays;
+
+/**
+ * The dynamic object table holds the dynamic game objects of a level, except for the moving traps (see
+ * {@link capstone.gameobject.dynamicObjects.TrapSwarm}). Every object is given a slot that stays the same for as long
+ * as it is part of the level, so the slot can be used as a key, e.g. for the scheduler of the level. Slots that become
+ * free are handed out again.
+ * <p>
+ * Next to that, the table keeps the slots in a dense list for going through all objects. An object is removed by
+ * moving the last entry of the list into its place, so neither adding nor removing an object costs more than constant
+ * time, and once the arrays have grown large enough, neither of them creates any garbage.
+ */
+class DynamicObjectTable {
+    private DynamicGameObject[] objects = new DynamicGameObject[16]; //by slot, null if the slot is free
+    private int[] positions = new int[16]; //position of a slot within the dense list
+    private int[] order = new int[16]; //dense list of the used slots
+    private int size;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int nextSlot; //slots from here on have never been used
+
+    /**
+     * Adds a dynamic game object to the table and tells it its slot.
+     *
+     * @param d dynamic game object that is not part of the table yet
+     * @return slot of the object
+     */
+    int add(DynamicGameObject d) {
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            slot = nextSlot++;
+            if (slot == objects.length) {
+                objects = Arrays.copyOf(objects, slot * 2);
+                positions = Arrays.copyOf(positions, slot * 2);
+                order = Arrays.copyOf(order, slot * 2);
+            }
+        }
+        objects[slot] = d;
+        positions[slot] = size;
+        order[size++] = slot;
+        d.setLevelSlot(slot);
+        return slot;
+    }
+
+    /**
+     * Removes a dynamic game object from the table. The last object of the dense list takes over its position.
+     *
+     * @param d dynamic game object to be removed
+     * @return slot the object had, or -1 if it was not part of the table
+     */
+    int remove(DynamicGameObject d) {
+        int slot = d.getLevelSlot();
+        if (!contains(d)) {
+            return -1;
+        }
+        int position = positions[slot];
+        int last = order[--size];
+        order[position] = last;
+        positions[last] = position;
+        objects[slot] = null;
+        d.setLevelSlot(-1);
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+        return slot;
+    }
+
+    /**
+     * Whether a dynamic game object is part of the table.
+     *
+     * @param d dynamic game object
+     * @return object is part of the table
+     */
+    boolean contains(DynamicGameObject d) {
+        int slot = d.getLevelSlot();
+        return slot >= 0 && slot < nextSlot && objects[slot] == d;
+    }
+
+    /**
+     * Gets the object in a slot.
+     *
+     * @param slot slot
+     * @return dynamic game object, or null if the slot is free
+     */
+    DynamicGameObject getBySlot(int slot) {
+        return objects[slot];
+    }
+
+    /**
+     * Gets an object by its position in the dense list.
+     *
+     * @param index position between 0 and size() (exclusive)
+     * @return dynamic game object
+     */
+    DynamicGameObject get(int index) {
+        return objects[order[index]];
+    }
+
+    /**
+     * Gets the amount of objects in the table.
+     *
+     * @return amount of objects
+     */
+    int size() {
+        return size;
+    }
+}
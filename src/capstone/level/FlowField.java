@@ -0,0 +1,162 @@
+package capstone.level;
+
+/**
+ * The flow field tells every moving trap which way leads to the player. Instead of every trap looking for a way around
+ * the walls on its own, a single breadth-first search spreads out from the field of the player once he has moved to
+ * another field (or the tiles have changed), and remembers for every field it reaches the direction of the first step
+ * on a shortest path to the player. A trap then only has to look up its field.
+ * <p>
+ * The search only covers a square of RADIUS fields around the player, so its cost does not depend on the size of the
+ * level. Traps outside of that square (or walled off from the player) are told that there is no direction, and fall
+ * back to simply heading towards the player.
+ * <p>
+ * There are usually several shortest paths. Among them, the field prefers the step along the axis on which the player
+ * is further away, just like a trap heading straight for the player would. This keeps the traps off the row and column
+ * of the player until they are close, so their random steps do not carry them away from him as much.
+ * <p>
+ * Directions are encoded the same way the moving traps use them: 0 => up, 1 => down, 2 => left, 3 => right.
+ */
+public class FlowField {
+    public static final int NO_DIRECTION = -1;
+    static final int RADIUS = 64; //fields in each direction of the player covered by the search
+    private static final int SIZE = 2 * RADIUS + 1; //fields per side of the covered square
+    static final byte UP = 0;
+    static final byte DOWN = 1;
+    static final byte LEFT = 2;
+    static final byte RIGHT = 3;
+
+    private final TileGrid grid;
+    //the arrays are only created once the field is used, since most levels that are read are never played
+    private byte[] directions; //direction towards the player per field of the covered square
+    private int[] distances; //steps from a field of the covered square to the target
+    private int[] stamps; //search during which a field was reached, so the arrays never need to be cleared
+    private int[] queue;
+    private int search;
+    private int originX; //level coordinates of the top left field of the covered square
+    private int originY;
+    private int targetX;
+    private int targetY;
+    private int gridModifications = -1; //modification count of the grid at the time of the last search
+
+    /**
+     * Creates a flow field for the tiles of a level. Nothing is computed until {@link #update(int, int)} is called.
+     *
+     * @param grid tiles of the level
+     */
+    FlowField(TileGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Makes sure the flow field leads to the given field. It is only computed again if the target has moved to
+     * another field or the tiles of the level have changed since the last time.
+     *
+     * @param x x coordinate of the target (usually the player)
+     * @param y y coordinate of the target
+     */
+    public void update(int x, int y) {
+        if (directions != null && x == targetX && y == targetY && grid.getModificationCount() == gridModifications) {
+            return;
+        }
+        if (directions == null) {
+            directions = new byte[SIZE * SIZE];
+            distances = new int[SIZE * SIZE];
+            stamps = new int[SIZE * SIZE];
+            queue = new int[SIZE * SIZE];
+        }
+        targetX = x;
+        targetY = y;
+        gridModifications = grid.getModificationCount();
+        originX = x - RADIUS;
+        originY = y - RADIUS;
+        ++search;
+
+        int head = 0;
+        int tail = 0;
+        int start = RADIUS * SIZE + RADIUS;
+        stamps[start] = search;
+        directions[start] = NO_DIRECTION;
+        distances[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int cellX = cell % SIZE;
+            int cellY = cell / SIZE;
+            //a trap on a neighbouring field reaches this field by stepping in the opposite direction
+            int open = grid.getWalkableDirections(originX + cellX, originY + cellY, false);
+            if ((open & TileGrid.UP) != 0 && cellY > 0) {
+                tail = reach(cell - SIZE, DOWN, distances[cell] + 1, tail);
+            }
+            if ((open & TileGrid.DOWN) != 0 && cellY < SIZE - 1) {
+                tail = reach(cell + SIZE, UP, distances[cell] + 1, tail);
+            }
+            if ((open & TileGrid.LEFT) != 0 && cellX > 0) {
+                tail = reach(cell - 1, RIGHT, distances[cell] + 1, tail);
+            }
+            if ((open & TileGrid.RIGHT) != 0 && cellX < SIZE - 1) {
+                tail = reach(cell + 1, LEFT, distances[cell] + 1, tail);
+            }
+        }
+    }
+
+    /**
+     * Adds a field of the covered square to the search, unless it has been reached before. If it has been reached on
+     * another path of the same length, the preferred direction of the field is kept.
+     *
+     * @param cell      index of the field within the covered square
+     * @param direction direction leading from the field towards the target
+     * @param distance  steps from the field to the target
+     * @param tail      end of the queue
+     * @return new end of the queue
+     */
+    private int reach(int cell, byte direction, int distance, int tail) {
+        if (stamps[cell] == search) {
+            if (distances[cell] == distance && direction == getPreferredDirection(cell)) {
+                directions[cell] = direction;
+            }
+            return tail;
+        }
+        stamps[cell] = search;
+        directions[cell] = direction;
+        distances[cell] = distance;
+        queue[tail] = cell;
+        return tail + 1;
+    }
+
+    /**
+     * Gets the direction that leads straight towards the target along the axis on which it is further away.
+     *
+     * @param cell index of the field within the covered square
+     * @return preferred direction
+     */
+    private static byte getPreferredDirection(int cell) {
+        int deltaX = cell % SIZE - RADIUS;
+        int deltaY = cell / SIZE - RADIUS;
+        if (Math.abs(deltaX) > Math.abs(deltaY)) {
+            return deltaX > 0 ? LEFT : RIGHT;
+        }
+        return deltaY > 0 ? UP : DOWN;
+    }
+
+    /**
+     * Gets the direction of the first step on a shortest path from a field to the target. Can be called from several
+     * threads at once, as long as the field is not updated at the same time.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return direction (0 => up, 1 => down, 2 => left, 3 => right), or NO_DIRECTION if the field is the target, too
+     * far away from it or cannot reach it
+     */
+    public int getDirection(int x, int y) {
+        if (directions == null) {
+            return NO_DIRECTION;
+        }
+        int cellX = x - originX;
+        int cellY = y - originY;
+        if (cellX < 0 || cellY < 0 || cellX >= SIZE || cellY >= SIZE) {
+            return NO_DIRECTION;
+        }
+        int cell = cellY * SIZE + cellX;
+        return stamps[cell] == search ? directions[cell] : NO_DIRECTION;
+    }
+}
@@ -0,0 +1,541 @@
+package capstone.level;
+
+import capstone.ScoringHelper;
+import capstone.gameobject.dynamicObjects.PlayerGameObject;
+import capstone.gameobject.dynamicObjects.TrapSwarm;
+import capstone.notificationcenter.NotificationCenter;
+import capstone.notificationcenter.NotificationMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The game journal is the autosave of the running game. Rather than writing the whole level again and again, it
+ * appends a few bytes for every change as it happens: the player moving, picking up keys and health, killing traps,
+ * losing lives and changing the score. After a crash, the game is recovered by replaying the journal onto the last
+ * snapshot of the level.
+ * <p>
+ * The autosave consists of numbered generations in the autosave folder: a snapshot (a binary level file, usually
+ * just the differences to the level file the game was started from, see {@link DiffLevelFile}) and a journal with everything that happened after the snapshot was taken. Every once in a
+ * while the journal is compacted: a new snapshot is taken and written in the background while the changes go to a
+ * new journal. Once the snapshot is on disk, the older generations are deleted. Until then, the older snapshot and
+ * both journals still describe the game completely.
+ * <p>
+ * The moving traps walk about all the time, so recording their every step would defeat the purpose. Only killed traps
+ * are recorded; a recovered game has its traps where they were when the last snapshot was taken.
+ * <p>
+ * When the game ends normally, the autosave is deleted. An autosave found at start-up therefore means that the game
+ * did not end normally, and it is recovered.
+ * <p>
+ * The journal is written while the game is on screen, partly in the background, so nothing is printed when writing it
+ * fails. AUTOSAVE_FAILURE is posted instead, and the failure is remembered (see {@link #hasFailed()}).
+ */
+public class GameJournal {
+    private static final String AUTOSAVE_DIRECTORY = "autosave";
+    private static final String JOURNAL_ENDING = ".journal";
+    private static final int MAGIC = 0x434a4e4c; //"CJNL"
+    private static final int VERSION = 1;
+    private static final int FLUSH_INTERVAL = 1000; //milliseconds of game time between two writes of the journal
+    private static final int COMPACTION_INTERVAL = 60000; //milliseconds of game time between two snapshots
+    private static final long COMPACTION_SIZE = 1 << 20; //bytes of journal after which a snapshot is taken early
+    //event types, each followed by its arguments
+    private static final byte PLAYER_MOVED = 1; //x, y
+    private static final byte TILE_CHANGED = 2; //x, y, type
+    private static final byte TRAP_REMOVED = 3; //slot
+    private static final byte KEY_TAKEN = 4;
+    private static final byte LIVES_CHANGED = 5; //lives
+    private static final byte SCORE_CHANGED = 6; //score
+
+    private final File directory;
+    private final Level level;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 13); //events not yet handed to the file
+    private FileChannel channel;
+    private long generation;
+    private long journalLength; //bytes of the current journal, including the buffered ones
+    private int lastScore;
+    private long nextFlush;
+    private long nextCompaction;
+    private CompletableFuture<Void> pendingSnapshot; //snapshot being written in the background, null if none
+    private volatile boolean failed; //writing the journal or a snapshot has failed, set by the background writer too
+
+    /**
+     * Creates a journal for a level.
+     *
+     * @param level     level whose changes are recorded
+     * @param directory autosave folder
+     */
+    private GameJournal(Level level, File directory) {
+        this.level = level;
+        this.directory = directory;
+    }
+
+    /**
+     * Starts recording the changes to a level. A snapshot of the level is taken right away. The autosave of the
+     * previous level is kept until the snapshot has been written.
+     *
+     * @param level level to be recorded
+     * @return the journal
+     * @throws IOException in case the autosave could not be created
+     */
+    public static GameJournal start(Level level) throws IOException {
+        File directory = new File(AUTOSAVE_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("The folder " + directory + " could not be created");
+        }
+        GameJournal journal = new GameJournal(level, directory);
+        journal.generation = Math.max(findLatestGeneration(directory, JOURNAL_ENDING),
+                findLatestGeneration(directory, BinaryLevelFile.ENDING));
+        journal.compact(false);
+        level.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Whether there is an autosave left over from a game that did not end normally.
+     *
+     * @return there is an autosave to recover
+     */
+    public static boolean hasAutosave() {
+        return findLatestGeneration(new File(AUTOSAVE_DIRECTORY), BinaryLevelFile.ENDING) >= 0;
+    }
+
+    /**
+     * Recovers the game from the autosave: the latest snapshot is read and the journals following it are replayed.
+     *
+     * @return the recovered level
+     * @throws IOException in case there is no autosave or it could not be read
+     */
+    public static Level recover() throws IOException {
+        File directory = new File(AUTOSAVE_DIRECTORY);
+        long snapshotGeneration = findLatestGeneration(directory, BinaryLevelFile.ENDING);
+        if (snapshotGeneration < 0) {
+            throw new IOException("There is no autosave to recover");
+        }
+        Level level = LevelInputOutput.readFile(getFile(directory, snapshotGeneration, BinaryLevelFile.ENDING),
+                new LevelLoadProgress());
+        //the snapshot is deleted once the recovered game has been autosaved again
+        if (level.getBase() == null) {
+            level.getStaticGameObjects().releaseChunkSource();
+        }
+        PlayerGameObject player = level.getPlayer();
+        int[] playerState = {player.getX(), player.getY(), player.getLives(), player.getScore(), player.isHasKey() ? 1 : 0};
+        for (long g = snapshotGeneration; ; ++g) {
+            File journalFile = getFile(directory, g, JOURNAL_ENDING);
+            if (!journalFile.isFile()) {
+                break;
+            }
+            ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalFile.toPath()));
+            if (journal.remaining() < 4 + 4 + 8 + 1 + 2 || journal.getInt() != MAGIC || journal.getInt() != VERSION
+                    || journal.getLong() != g) {
+                throw new IOException(journalFile + " is not a journal of this autosave");
+            }
+            boolean continuation = journal.get() != 0;
+            byte[] levelName = new byte[journal.getShort() & 0xffff];
+            journal.get(levelName);
+            if (g > snapshotGeneration && !continuation) {
+                //the journal belongs to a level that was started later, but whose snapshot has not been written
+                break;
+            }
+            level.setLevelName(levelName.length > 0 ? new String(levelName, StandardCharsets.UTF_8) : null);
+            replay(journal, level, playerState);
+        }
+        //the recovered player replaces the one from the snapshot
+        level.removeDynamicGameObject(player);
+        player = new PlayerGameObject(playerState[0], playerState[1], playerState[2], level, playerState[4] != 0);
+        level.setPlayer(player);
+        player.setScore(playerState[3]);
+        level.setSave(true);
+        //the snapshot does not last, so its path graph is not stored next to it
+        LevelInputOutput.preparePathGraph(level, null, new LevelLoadProgress());
+        ScoringHelper.setHeight(level.getLevelHeight());
+        ScoringHelper.setWidth(level.getLevelWidth());
+        return level;
+    }
+
+    /**
+     * Replays the events of a journal onto a level. A journal that ends in the middle of an event (because the game
+     * crashed while writing it) is replayed up to the last complete event.
+     *
+     * @param journal     events of the journal
+     * @param level       level to replay the events on
+     * @param playerState x, y, lives, score and key (0 or 1) of the player, changed by the events
+     * @throws IOException in case the journal contains an unknown event
+     */
+    private static void replay(ByteBuffer journal, Level level, int[] playerState) throws IOException {
+        TrapSwarm trapSwarm = level.getTrapSwarm();
+        while (journal.hasRemaining()) {
+            byte type = journal.get();
+            if (journal.remaining() < getArgumentLength(type)) {
+                break;
+            }
+            switch (type) {
+                case PLAYER_MOVED:
+                    playerState[0] = journal.getInt();
+                    playerState[1] = journal.getInt();
+                    break;
+                case TILE_CHANGED:
+                    level.setTileType(journal.getInt(), journal.getInt(), journal.get());
+                    break;
+                case TRAP_REMOVED:
+                    int slot = journal.getInt();
+                    if (slot < trapSwarm.size()) {
+                        level.removeDynamicGameObject(trapSwarm.getTrap(slot));
+                    }
+                    break;
+                case KEY_TAKEN:
+                    playerState[4] = 1;
+                    break;
+                case LIVES_CHANGED:
+                    playerState[2] = journal.getInt();
+                    break;
+                case SCORE_CHANGED:
+                    playerState[3] = journal.getInt();
+                    break;
+                default:
+                    throw new IOException("Unknown event " + type + " in the journal");
+            }
+        }
+    }
+
+    /**
+     * Gets the length of the arguments of an event.
+     *
+     * @param type event type
+     * @return length in bytes
+     */
+    private static int getArgumentLength(byte type) {
+        switch (type) {
+            case PLAYER_MOVED:
+                return 8;
+            case TILE_CHANGED:
+                return 9;
+            case TRAP_REMOVED:
+            case LIVES_CHANGED:
+            case SCORE_CHANGED:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Records that the player has moved.
+     *
+     * @param x new x coordinate of the player
+     * @param y new y coordinate of the player
+     */
+    void playerMoved(int x, int y) {
+        if (reserve(9)) {
+            buffer.put(PLAYER_MOVED).putInt(x).putInt(y);
+        }
+    }
+
+    /**
+     * Records that a field of the level has changed, e.g. because a key or health was picked up.
+     *
+     * @param x    x coordinate of the field
+     * @param y    y coordinate of the field
+     * @param type new tile type code of the field
+     */
+    void tileChanged(int x, int y, byte type) {
+        if (reserve(10)) {
+            buffer.put(TILE_CHANGED).putInt(x).putInt(y).put(type);
+        }
+    }
+
+    /**
+     * Records that a moving trap has been removed (usually killed by a shuriken).
+     *
+     * @param slot slot of the trap in the trap swarm at the time it was removed
+     */
+    void trapRemoved(int slot) {
+        if (reserve(5)) {
+            buffer.put(TRAP_REMOVED).putInt(slot);
+        }
+    }
+
+    /**
+     * Records that the player has picked up a key.
+     */
+    public void keyTaken() {
+        if (reserve(1)) {
+            buffer.put(KEY_TAKEN);
+        }
+    }
+
+    /**
+     * Records that the amount of lives of the player has changed.
+     *
+     * @param lives new amount of lives
+     */
+    public void livesChanged(int lives) {
+        if (reserve(5)) {
+            buffer.put(LIVES_CHANGED).putInt(lives);
+        }
+    }
+
+    /**
+     * Records that the score of the player has changed by an event. The score also decreases steadily over time,
+     * which is recorded once per write of the journal instead.
+     *
+     * @param score new score
+     */
+    public void scoreChanged(int score) {
+        if (reserve(5)) {
+            buffer.put(SCORE_CHANGED).putInt(score);
+            lastScore = score;
+        }
+    }
+
+    /**
+     * Makes room for an event in the buffer, writing the buffer to the journal if necessary.
+     *
+     * @param length length of the event in bytes
+     * @return whether the event can be recorded (false if the journal could not be written)
+     */
+    private boolean reserve(int length) {
+        if (channel == null) {
+            return false;
+        }
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        journalLength += length;
+        return channel != null;
+    }
+
+    /**
+     * Called once per tick of the level. Writes the recorded events to the journal every second of game time, and
+     * takes a new snapshot every minute or once the journal has grown large.
+     *
+     * @param now current game time
+     */
+    void update(long now) {
+        if (channel == null) {
+            return;
+        }
+        if (now >= nextFlush) {
+            nextFlush = now + FLUSH_INTERVAL;
+            PlayerGameObject player = level.getPlayer();
+            if (player != null && player.getScore() != lastScore) {
+                scoreChanged(player.getScore());
+            }
+            flush();
+        }
+        if ((now >= nextCompaction || journalLength >= COMPACTION_SIZE)
+                && (pendingSnapshot == null || pendingSnapshot.isDone())) {
+            nextCompaction = now + COMPACTION_INTERVAL;
+            compact(true);
+        }
+    }
+
+    /**
+     * Writes the buffered events to the journal. If the journal cannot be written, recording stops.
+     */
+    private void flush() {
+        if (channel == null || buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ex) {
+            //the game is no longer autosaved
+            reportFailure();
+            closeChannel();
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Takes a snapshot of the level and starts a new journal. The snapshot is written in the background; once it is on
+     * disk, the older generations of the autosave are deleted.
+     *
+     * @param continuation whether the new journal continues the current one (false for a newly started level)
+     */
+    private void compact(boolean continuation) {
+        flush();
+        closeChannel();
+        LevelTemplate snapshot = new LevelTemplate(level);
+        long snapshotGeneration = ++generation;
+        try {
+            openJournal(continuation);
+        } catch (IOException ex) {
+            //the game is no longer autosaved
+            reportFailure();
+            closeChannel();
+            return;
+        }
+        pendingSnapshot = LevelInputOutput.writeSnapshot(snapshot, getFile(directory, snapshotGeneration, BinaryLevelFile.ENDING))
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        //the older generations are kept, so the game can still be recovered from them
+                        reportFailure();
+                    } else {
+                        deleteGenerationsBefore(snapshotGeneration);
+                    }
+                });
+    }
+
+    /**
+     * Opens the journal of the current generation and writes its header: the generation, whether it continues the
+     * journal before it, and the name of the level.
+     *
+     * @param continuation whether the journal continues the one before it
+     * @throws IOException in case the journal could not be created
+     */
+    private void openJournal(boolean continuation) throws IOException {
+        channel = FileChannel.open(getFile(directory, generation, JOURNAL_ENDING).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        byte[] levelName = level.getLevelName() != null
+                ? level.getLevelName().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 1 + 2 + levelName.length);
+        header.putInt(MAGIC).putInt(VERSION).putLong(generation).put((byte) (continuation ? 1 : 0))
+                .putShort((short) levelName.length).put(levelName);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        journalLength = header.capacity();
+        lastScore = level.getPlayer() != null ? level.getPlayer().getScore() : 0;
+    }
+
+    /**
+     * Writes the remaining events and stops recording. The autosave is kept.
+     */
+    public void close() {
+        flush();
+        closeChannel();
+        level.setJournal(null);
+    }
+
+    /**
+     * Stops recording and deletes the autosave, because the game has ended normally.
+     */
+    public void discard() {
+        close();
+        if (pendingSnapshot != null) {
+            try {
+                pendingSnapshot.join();
+            } catch (CompletionException ex) {
+                //nothing to keep anyway
+            }
+        }
+        deleteGenerationsBefore(Long.MAX_VALUE);
+        //an empty autosave folder that could not be deleted does not count as an autosave, so it is left alone
+        directory.delete();
+    }
+
+    /**
+     * Whether writing the journal or a snapshot has failed since recording started.
+     *
+     * @return the autosave has failed
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * Remembers that the autosave has failed and posts AUTOSAVE_FAILURE, so the views can tell the player. Can be
+     * called from the background writer.
+     */
+    private void reportFailure() {
+        failed = true;
+        NotificationCenter.postNotification(NotificationMessage.AUTOSAVE_FAILURE);
+    }
+
+    /**
+     * Closes the journal file.
+     */
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            //everything has been written before, so nothing is lost
+        }
+        channel = null;
+    }
+
+    /**
+     * Deletes all snapshots and journals of the autosave older than the given generation.
+     *
+     * @param oldestKept generation that is kept
+     */
+    private void deleteGenerationsBefore(long oldestKept) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            long g = getGeneration(file);
+            //a file that could not be deleted is tried again after the next snapshot
+            if (g >= 0 && g < oldestKept) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Finds the latest generation of the autosave that has a file with the given ending.
+     *
+     * @param directory autosave folder
+     * @param ending    file ending of snapshots or journals
+     * @return latest generation, or -1 if there is none
+     */
+    private static long findLatestGeneration(File directory, String ending) {
+        long latest = -1;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return latest;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(ending)) {
+                latest = Math.max(latest, getGeneration(file));
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Gets the generation of a snapshot or journal from its name.
+     *
+     * @param file file in the autosave folder
+     * @return generation, or -1 if the file does not belong to the autosave
+     */
+    private static long getGeneration(File file) {
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        if (dot <= 0 || !(name.endsWith(BinaryLevelFile.ENDING) || name.endsWith(JOURNAL_ENDING))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, dot));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the snapshot or journal file of a generation.
+     *
+     * @param directory autosave folder
+     * @param g         generation
+     * @param ending    file ending of snapshots or journals
+     * @return file in the autosave folder
+     */
+    private static File getFile(File directory, long g, String ending) {
+        return new File(directory, g + ending);
+    }
+}
@@ -1,34 +1,105 @@
 package capstone.level;
 
+import capstone.GameClock;
+import capstone.TimingWheel;
 import capstone.gameobject.GameObject;
+import capstone.gameobject.dynamicObjects.BulletGameObject;
 import capstone.gameobject.dynamicObjects.DynamicGameObject;
+import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
 import capstone.gameobject.dynamicObjects.PlayerGameObject;
+import capstone.gameobject.dynamicObjects.TrapSwarm;
 import capstone.gameobject.staticObjects.StaticGameObject;
 import com.googlecode.lanterna.input.Key;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 /**
  * The level class represents all game objects and the attached logic that is required in order to play the game.
  * A few words about the memory architecture:
  * <p>
- * Static Game Objects are held in a 2D array. They do not know their own coordinates, and they do not need to, since
+ * Static Game Objects are held in a tile grid. They do not know their own coordinates, and they do not need to, since
  * they will never move. They also do not need to be updated periodically. Because they have fixed positions, they make
  * for great collision detection (the collision of a dynamic element with the surrounding static elements can be done
  * within fixed time, whilst if I would not split them into dynamic and static game objects, you would have to compare
- * every object to each other, which is very calculation intensive.
+ * every object to each other, which is very calculation intensive. Since they carry no state of their own, the grid
+ * only stores a byte per field and hands out one shared instance per type (see {@link TileGrid}). Large levels are not
+ * held in memory completely: the grid reads them chunk by chunk from disk and drops chunks far away from the screen
+ * and the player again.
  * <p>
  * Dynamic Game Object are held in an arraylist. They know their own coordinates, and they are naturally drawn on top of
  * any static game objects (e.g. a player on top of a spike or a key). Since they are updated regularly, I chose this
- * memory format because it ensures I only iterate over the necessary items.
+ * memory format because it ensures I only iterate over the necessary items. Moving traps are the exception: they are
+ * handed over to a {@link TrapSwarm}, which keeps their state in flat arrays and updates them all in one go.
+ * <p>
+ * In addition to the arraylist, every dynamic game object within the level boundaries is kept in a spatial index, a
+ * uniform grid of buckets. Questions such as "what is standing on this field?" (bullets, player interaction) or "what
+ * is visible on screen?" (rendering) are answered by the index, so their cost depends on the local activity rather
+ * than on the total amount of dynamic game objects in the level.
+ * <p>
+ * Whenever something changes on a field that is shown on screen (an object moves onto it or away from it, changes its
+ * representation, appears or disappears, or the tile changes), the field is put into a set of dirty fields. The view
+ * only draws those fields again, so the cost of drawing a frame depends on the changes on screen rather than on the
+ * amount of objects.
+ * <p>
+ * Dynamic game objects are not updated on every tick either. Each of them tells the level when it next wants to be
+ * updated (see {@link DynamicGameObject#getNextWakeUp()}), and the level keeps them in a {@link TimingWheel} that
+ * hands out the ones whose time has come. The trap swarm does the same for the moving traps.
+ * <p>
+ * While the dynamic game objects are being updated, adding and removing objects is deferred: the changes are queued
+ * and applied together at the end of the tick. This way no object disappears from under the feet of the loop updating
+ * it, and the loop does not need a copy of the object list. Collided bullets are kept in a pool and handed out again
+ * for the next shot, so steady gameplay does not create any garbage.
  */
 public class Level {
+    private static final int CHUNK_MAINTENANCE_INTERVAL = 100; //ticks between two looks for unused chunks
+    private static final int CHUNK_EVICTION_DELAY = 500; //ticks a chunk may go unused before it is dropped
     private PlayerGameObject player;
-    private StaticGameObject[][] staticGameObjects;
-    private final ArrayList<DynamicGameObject> dynamicGameObjects;
+    private final TileGrid staticGameObjects;
+    private final DynamicObjectTable dynamicGameObjects; //all dynamic game objects except moving traps
+    private final TrapSwarm trapSwarm;
+    private final SpatialIndex spatialIndex;
+    private final FlowField flowField;
+    private PathGraph pathGraph; //leads the moving traps on large levels, null if there is none
+    private final GameClock clock;
+    private final TimingWheel scheduler = new TimingWheel(); //wakes up the dynamic game objects by their slots
+    private boolean deferChanges; //the tick is running, additions and removals wait until its end
+    private final ArrayList<DynamicGameObject> pendingAdditions = new ArrayList<>();
+    private final ArrayList<DynamicGameObject> pendingRemovals = new ArrayList<>();
+    private final ArrayList<BulletGameObject> bulletPool = new ArrayList<>(); //collided bullets ready to be reused
+    //read-only view over the moving traps followed by all other dynamic game objects
+    private final List<DynamicGameObject> allDynamicGameObjects = new AbstractList<DynamicGameObject>() {
+        @Override
+        public DynamicGameObject get(int index) {
+            int traps = trapSwarm.size();
+            return index < traps ? trapSwarm.getTrap(index) : dynamicGameObjects.get(index - traps);
+        }
+
+        @Override
+        public int size() {
+            return trapSwarm.size() + dynamicGameObjects.size();
+        }
+    };
+    private final ArrayList<DynamicGameObject> interactionBuffer = new ArrayList<>(); //reused each frame
+    private int[] dirtyCells = new int[16]; //fields on screen that need to be drawn again, as y * levelWidth + x
+    private int dirtyCellCount;
+    private boolean[] dirtyMarks = new boolean[0]; //fields of the focus area that are in the list, row by row
     private int levelWidth;
     private int levelHeight;
     private String levelName;
+    private boolean save;
+    //area that is currently shown on screen, the chunks around it are kept in memory
+    private int focusX;
+    private int focusY;
+    private int focusWidth;
+    private int focusHeight;
+    private int ticksSinceChunkMaintenance;
+    private int evictedChunkCount; //chunks dropped from memory so far
+    private GameJournal journal; //records the changes to the level for crash recovery, null if there is none
+    private BaseLevel base; //level file the level started out from, null if not known
 
     /**
      * Creates an empty rectangular level with the correct size.
@@ -37,10 +108,26 @@ public class Level {
      * @param height Height of the level in gameobjects
      */
     public Level(int width, int height) {
+        this(width, height, new Random().nextLong());
+    }
+
+    /**
+     * Creates an empty rectangular level with the correct size. Two levels with the same content and the same seed
+     * behave exactly the same.
+     *
+     * @param width  Width of the level in gameobjects
+     * @param height Height of the level in gameobjects
+     * @param seed   seed for the random movement of the moving traps
+     */
+    public Level(int width, int height, long seed) {
         //creates an empty level with
         //the correct size.
-        dynamicGameObjects = new ArrayList<>();
-        staticGameObjects = new StaticGameObject[width][height];
+        clock = new GameClock();
+        dynamicGameObjects = new DynamicObjectTable();
+        trapSwarm = new TrapSwarm(this, seed);
+        spatialIndex = new SpatialIndex(width, height);
+        staticGameObjects = new TileGrid(width, height);
+        flowField = new FlowField(staticGameObjects);
         this.levelWidth = width;
         this.levelHeight = height;
     }
@@ -72,23 +159,54 @@ public class Level {
     }
 
     /**
-     * Adds a static game object to the scene.
+     * Adds a static game object to the scene. Only the type of the object is stored, the object itself is replaced by
+     * the shared instance of its type.
      *
      * @param g GameObject to be added.
      * @param x x coordinate of the game object in the scene
      * @param y y coordinate of the game object in the scene
      */
     public void addStaticGameObject(StaticGameObject g, int x, int y) {
-        staticGameObjects[x][y] = g;
+        setTileType(x, y, TileGrid.getTileType(g));
     }
 
     /**
-     * Adds a dynamic game object to the scene
+     * Sets the type of a field in the scene directly (see the type codes in {@link TileGrid}).
+     *
+     * @param x    x coordinate of the field
+     * @param y    y coordinate of the field
+     * @param type tile type code
+     */
+    public void setTileType(int x, int y, byte type) {
+        staticGameObjects.setTileType(x, y, type);
+        addDirtyCell(x, y);
+        if (journal != null) {
+            journal.tileChanged(x, y, type);
+        }
+        if (pathGraph != null) {
+            pathGraph.tileChanged(x, y);
+        }
+    }
+
+    /**
+     * Adds a dynamic game object to the scene. During a tick, the object is only added at the end of it.
      *
      * @param d dynamic game object to be added.
      */
     public void addDynamicGameobject(DynamicGameObject d) {
-        dynamicGameObjects.add(d);
+        if (deferChanges) {
+            pendingAdditions.add(d);
+            return;
+        }
+        if (d instanceof MovingTrapGameObject) {
+            trapSwarm.add((MovingTrapGameObject) d);
+        } else {
+            int slot = dynamicGameObjects.add(d);
+            //updated for the first time during the next tick
+            scheduler.schedule(slot, clock.getTime());
+        }
+        spatialIndex.insert(d, d.getX(), d.getY());
+        addDirtyCell(d.getX(), d.getY());
         if (d instanceof PlayerGameObject) {
             //if the dynamic game object is a player, assign it to the player variable instead.
             this.player = (PlayerGameObject) d;
@@ -106,44 +224,53 @@ public class Level {
     }
 
     /**
-     * Gets static objects for a given frame.
+     * Gets static objects for a given frame. The frame always has the requested size; fields outside of the level are
+     * null. Allocates a new array on every call, so anything that goes through regions regularly should use
+     * {@link #visitTiles(int, int, int, int, TileVisitor)} or {@link #copyTileTypes(int, int, int, int, byte[])}.
      *
      * @param xOffset x offset of the rectangle
      * @param yOffset y offset of the rectangle
      * @param width   width of the rectangle
      * @param height  height of the rectangle
-     * @return the gameobjects contained in the given square
+     * @return the gameobjects contained in the given square, indexed by x first
      */
     public GameObject[][] requestStaticObjectsForFrame(int xOffset, int yOffset, int width, int height) {
-        //making sure we don't go out of bounds
-        if (width > levelWidth) {
-            width = levelWidth;
-        }
-        if (height > levelHeight) {
-            height = levelHeight;
-        }
-        if (xOffset < 0) {
-            xOffset = 0;
-        }
-        if (yOffset < 0) {
-            yOffset = 0;
-        }
-
         if (width < 0 || height < 0) {
             throw new ArrayIndexOutOfBoundsException("A negative frame was requested");
         }
         GameObject[][] frame = new GameObject[width][height];
-        //Creates a new 2D array with the correct size and fills it with the elements. accordingly.
-        for (int x = xOffset; x < xOffset + width; ++x) {
-            try {
-                System.arraycopy(staticGameObjects[x], yOffset, frame[x - xOffset], 0, yOffset + height - yOffset);
-            } catch (ArrayIndexOutOfBoundsException ex) {
-                System.out.println("An illegal frame was requested.");
-            }
-        }
+        visitTiles(xOffset, yOffset, width, height, (x, y, type) -> frame[x - xOffset][y - yOffset] = TileGrid.getFlyweight(type));
         return frame;
     }
 
+    /**
+     * Hands the tile types of all fields of a rectangle that lie within the level to a visitor, row by row. The
+     * rectangle may reach beyond the level on any side; nothing is allocated.
+     *
+     * @param x       x coordinate of the top left corner
+     * @param y       y coordinate of the top left corner
+     * @param width   width of the rectangle
+     * @param height  height of the rectangle
+     * @param visitor visitor to be called for every field
+     */
+    public void visitTiles(int x, int y, int width, int height, TileVisitor visitor) {
+        staticGameObjects.visitTiles(x, y, width, height, visitor);
+    }
+
+    /**
+     * Copies the tile types of a rectangle into a buffer provided by the caller, row by row. Fields outside of the
+     * level are EMPTY, so the buffer can be reused for any position of the rectangle.
+     *
+     * @param x           x coordinate of the top left corner
+     * @param y           y coordinate of the top left corner
+     * @param width       width of the rectangle
+     * @param height      height of the rectangle
+     * @param destination buffer of at least width * height entries
+     */
+    public void copyTileTypes(int x, int y, int width, int height, byte[] destination) {
+        staticGameObjects.copyTileTypes(x, y, width, height, destination);
+    }
+
     /**
      * gets the filename of the current level
      *
@@ -163,25 +290,349 @@ public class Level {
     }
 
     /**
-     * Updates all the dynamic game objects in the level
+     * Whether the level was read from a save file (and thus contains the state of a player).
+     *
+     * @return level is a save
+     */
+    public boolean isSave() {
+        return save;
+    }
+
+    /**
+     * Sets whether the level was read from a save file.
+     *
+     * @param save level is a save
+     */
+    public void setSave(boolean save) {
+        this.save = save;
+    }
+
+    /**
+     * Gets the level file the level started out from. Saves only store how the level differs from it.
+     *
+     * @return base level, or null if not known
+     */
+    BaseLevel getBase() {
+        return base;
+    }
+
+    /**
+     * Sets the level file the level started out from.
+     *
+     * @param base base level, or null if not known
+     */
+    void setBase(BaseLevel base) {
+        this.base = base;
+    }
+
+    /**
+     * Tells the level which part of it is currently shown on screen. The static tiles around this area and around
+     * the player are kept in memory, while tiles far away may be dropped (see {@link TileGrid}).
+     *
+     * @param x      x coordinate of the visible area
+     * @param y      y coordinate of the visible area
+     * @param width  width of the visible area
+     * @param height height of the visible area
+     */
+    public void setFocus(int x, int y, int width, int height) {
+        if (x == focusX && y == focusY && width == focusWidth && height == focusHeight) {
+            return;
+        }
+        //the dirty fields outside of the new area are forgotten, the others are marked within the new area
+        int[] cells = Arrays.copyOf(dirtyCells, dirtyCellCount);
+        clearDirtyCells();
+        this.focusX = x;
+        this.focusY = y;
+        this.focusWidth = width;
+        this.focusHeight = height;
+        if (dirtyMarks.length < width * height) {
+            dirtyMarks = new boolean[width * height];
+        }
+        for (int cell : cells) {
+            addDirtyCell(cell % levelWidth, cell / levelWidth);
+        }
+    }
+
+    /**
+     * Whether a field is part of the area that is currently shown on screen.
      *
-     * @param deltatime time passed since last call
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return field is on screen
      */
+    public boolean isInFocus(int x, int y) {
+        return x >= focusX && y >= focusY && x < focusX + focusWidth && y < focusY + focusHeight;
+    }
 
-    private void updateDynamicObjects(int deltatime) {
-        ArrayList<DynamicGameObject> workingCopy = new ArrayList<>(dynamicGameObjects);
-        for (DynamicGameObject d : workingCopy) {
-            d.update(deltatime);
+    /**
+     * Keeps the chunks around the visible area and the player in memory and, every once in a while, drops the chunks
+     * that have not been used for some time.
+     */
+    private void maintainChunks() {
+        staticGameObjects.nextEpoch();
+        if (++ticksSinceChunkMaintenance < CHUNK_MAINTENANCE_INTERVAL) {
+            return;
         }
+        ticksSinceChunkMaintenance = 0;
+        //one chunk of margin, so the chunks are already there when the camera moves on
+        staticGameObjects.retain(focusX - 64, focusY - 64, focusWidth + 128, focusHeight + 128);
+        if (player != null) {
+            staticGameObjects.retain(player.getX() - 64, player.getY() - 64, 129, 129);
+        }
+        evictedChunkCount += staticGameObjects.evict(CHUNK_EVICTION_DELAY);
     }
 
     /**
-     * Removes a dynamic game object from the arraylist.
+     * Gets the amount of chunks that have been dropped from memory since the level was created. The amount of chunks
+     * still in memory is known by the tile grid, see {@link TileGrid#getResidentChunkCount()}.
+     *
+     * @return amount of dropped chunks
+     */
+    public int getEvictedChunkCount() {
+        return evictedChunkCount;
+    }
+
+    /**
+     * Updates all the dynamic game objects in the level. The moving traps are updated first (possibly on several
+     * cores, see {@link TrapSwarm}), then the remaining objects are updated one after another on the game thread, so
+     * their effects on other objects (e.g. bullets killing traps) are applied in a fixed order.
+     */
+    private void updateDynamicObjects() {
+        trapSwarm.update(clock);
+        int dueCount = scheduler.advance(clock.getTime());
+        int[] due = scheduler.getDue();
+        for (int i = 0; i < dueCount; ++i) {
+            //removals wait until the end of the tick, so every due slot still holds its object
+            DynamicGameObject d = dynamicGameObjects.getBySlot(due[i]);
+            d.update(clock);
+            long wakeUp = d.getNextWakeUp();
+            if (wakeUp != DynamicGameObject.NEVER) {
+                scheduler.schedule(due[i], wakeUp);
+            }
+        }
+    }
+
+    /**
+     * Applies the additions and removals of dynamic game objects that have been queued during the tick.
+     */
+    private void applyPendingChanges() {
+        deferChanges = false;
+        for (int i = 0; i < pendingRemovals.size(); ++i) {
+            DynamicGameObject d = pendingRemovals.get(i);
+            d.setPendingRemoval(false);
+            removeDynamicGameObject(d);
+        }
+        pendingRemovals.clear();
+        for (int i = 0; i < pendingAdditions.size(); ++i) {
+            addDynamicGameobject(pendingAdditions.get(i));
+        }
+        pendingAdditions.clear();
+    }
+
+    /**
+     * Gets a bullet to be fired, reusing one that has collided before if there is one. The bullet still has to be
+     * added to the level.
+     *
+     * @param x         x coordinate of the bullet
+     * @param y         y coordinate of the bullet
+     * @param direction trajectory of the bullet
+     * @return bullet ready to be added
+     */
+    public BulletGameObject obtainBullet(int x, int y, BulletGameObject.Direction direction) {
+        if (bulletPool.isEmpty()) {
+            return new BulletGameObject(x, y, this, direction);
+        }
+        BulletGameObject bullet = bulletPool.remove(bulletPool.size() - 1);
+        bullet.reset(x, y, direction);
+        return bullet;
+    }
+
+    /**
+     * Gets the amount of objects waiting to be woken up: the dynamic game objects in the scheduler of the level and
+     * the moving traps that are awake.
+     *
+     * @return queue depth of the schedulers
+     */
+    public int getScheduledCount() {
+        return scheduler.size() + trapSwarm.getScheduledCount();
+    }
+
+    /**
+     * Gets the longest time an object woken up during the last tick had been overdue.
+     *
+     * @return lateness in milliseconds
+     */
+    public long getSchedulerLateness() {
+        return Math.max(scheduler.getLateness(), trapSwarm.getLateness());
+    }
+
+    /**
+     * Removes a dynamic game object from the scene. During a tick, the object is only marked as about to be removed
+     * (see {@link DynamicGameObject#isPendingRemoval()}) and taken out at the end of it. Removed bullets go back to
+     * the pool.
      *
      * @param dynamicGameObject dynamic game object to be removed
      */
     public void removeDynamicGameObject(DynamicGameObject dynamicGameObject) {
-        dynamicGameObjects.remove(dynamicGameObject);
+        if (deferChanges) {
+            if (pendingAdditions.remove(dynamicGameObject)) {
+                //it has never been part of the level
+                return;
+            }
+            if (!dynamicGameObject.isPendingRemoval()) {
+                dynamicGameObject.setPendingRemoval(true);
+                pendingRemovals.add(dynamicGameObject);
+            }
+            return;
+        }
+        int x = dynamicGameObject.getX();
+        int y = dynamicGameObject.getY();
+        boolean removed;
+        if (dynamicGameObject instanceof MovingTrapGameObject) {
+            int slot = trapSwarm.indexOf((MovingTrapGameObject) dynamicGameObject);
+            trapSwarm.remove((MovingTrapGameObject) dynamicGameObject);
+            removed = slot >= 0;
+            if (removed && journal != null) {
+                journal.trapRemoved(slot);
+            }
+        } else {
+            int slot = dynamicGameObjects.remove(dynamicGameObject);
+            removed = slot >= 0;
+            if (removed) {
+                scheduler.remove(slot);
+            }
+        }
+        if (removed) {
+            spatialIndex.remove(dynamicGameObject, x, y);
+            addDirtyCell(x, y);
+            if (dynamicGameObject instanceof BulletGameObject) {
+                bulletPool.add((BulletGameObject) dynamicGameObject);
+            }
+        }
+    }
+
+    /**
+     * Called by dynamic game objects whenever they have changed their position. Keeps the spatial index up to date.
+     * Both the field the object has left and the one it has entered are marked as dirty, so that the view can draw
+     * them again. Since the level is usually simulated several times per drawn frame, an object might have moved more
+     * than once since it was last drawn, so its old position alone would not be enough.
+     *
+     * @param d    dynamic game object that has moved
+     * @param oldX x coordinate before the movement
+     * @param oldY y coordinate before the movement
+     */
+    public void dynamicGameObjectMoved(DynamicGameObject d, int oldX, int oldY) {
+        spatialIndex.move(d, oldX, oldY, d.getX(), d.getY());
+        addDirtyCell(oldX, oldY);
+        addDirtyCell(d.getX(), d.getY());
+        if (d == player && journal != null) {
+            journal.playerMoved(d.getX(), d.getY());
+        }
+    }
+
+    /**
+     * Called by dynamic game objects whenever their representation has changed without moving, e.g. for the next
+     * frame of an animation. Marks the field of the object as dirty.
+     *
+     * @param d dynamic game object that has changed
+     */
+    public void dynamicGameObjectChanged(DynamicGameObject d) {
+        addDirtyCell(d.getX(), d.getY());
+    }
+
+    /**
+     * Remembers a field that needs to be drawn again. Fields that are not shown on screen are ignored, and every field
+     * is only remembered once.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     */
+    private void addDirtyCell(int x, int y) {
+        if (!isInFocus(x, y) || !isInsideLevel(x, y)) {
+            return;
+        }
+        int mark = (y - focusY) * focusWidth + (x - focusX);
+        if (dirtyMarks[mark]) {
+            return;
+        }
+        dirtyMarks[mark] = true;
+        if (dirtyCellCount == dirtyCells.length) {
+            dirtyCells = Arrays.copyOf(dirtyCells, dirtyCellCount * 2);
+        }
+        dirtyCells[dirtyCellCount++] = y * levelWidth + x;
+    }
+
+    /**
+     * Gets the amount of fields on screen that need to be drawn again since the last call of
+     * {@link #clearDirtyCells()}.
+     *
+     * @return amount of dirty fields
+     */
+    public int getDirtyCellCount() {
+        return dirtyCellCount;
+    }
+
+    /**
+     * Gets a dirty field, encoded as y * levelWidth + x.
+     *
+     * @param i index of the dirty field
+     * @return encoded field position
+     */
+    public int getDirtyCell(int i) {
+        return dirtyCells[i];
+    }
+
+    /**
+     * Forgets all dirty fields (usually after they have been drawn).
+     */
+    public void clearDirtyCells() {
+        for (int i = 0; i < dirtyCellCount; ++i) {
+            int x = dirtyCells[i] % levelWidth;
+            int y = dirtyCells[i] / levelWidth;
+            dirtyMarks[(y - focusY) * focusWidth + (x - focusX)] = false;
+        }
+        dirtyCellCount = 0;
+    }
+
+    /**
+     * Whether a coordinate lies within the boundaries of the level.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return coordinate is within the level
+     */
+    public boolean isInsideLevel(int x, int y) {
+        return x >= 0 && y >= 0 && x < levelWidth && y < levelHeight;
+    }
+
+    /**
+     * Finds all dynamic game objects standing on the given field.
+     *
+     * @param x      x coordinate of the field
+     * @param y      y coordinate of the field
+     * @param result list to be filled, it will be cleared first
+     * @return the given result list
+     */
+    public List<DynamicGameObject> queryDynamicGameObjectsAt(int x, int y, List<DynamicGameObject> result) {
+        result.clear();
+        spatialIndex.collectAt(x, y, result);
+        return result;
+    }
+
+    /**
+     * Finds all dynamic game objects within the given rectangle (e.g. the part of the level visible on screen).
+     *
+     * @param x      x coordinate of the upper left corner
+     * @param y      y coordinate of the upper left corner
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     * @param result list to be filled, it will be cleared first
+     * @return the given result list
+     */
+    public List<DynamicGameObject> queryDynamicGameObjectsInRectangle(int x, int y, int width, int height, List<DynamicGameObject> result) {
+        result.clear();
+        spatialIndex.collectInRectangle(x, y, width, height, result);
+        return result;
     }
 
     /**
@@ -191,7 +642,7 @@ public class Level {
      * @param y y coordinate of the static game object to be removed
      */
     public void removeStaticGameObject(int x, int y) {
-        staticGameObjects[x][y] = null;
+        setTileType(x, y, TileGrid.EMPTY);
     }
 
     /**
@@ -205,28 +656,106 @@ public class Level {
 
     /**
      * Allows the static object at the current player position to interact with the player.
-     * Allows the dynamic game objects to interact with the player (they, in return, check the player position for
-     * themselves. This is done to allow future additions such as field effects)
+     * Allows the dynamic game objects on the same field as the player to interact with the player (they, in return,
+     * check the player position for themselves. This is done to allow future additions such as field effects, which
+     * would then have to query a larger rectangle)
      */
     public void doPlayerInteraction() {
         //static game object the player might be standing on
-        StaticGameObject s = staticGameObjects[player.getX()][player.getY()];
+        StaticGameObject s = staticGameObjects.get(player.getX(), player.getY());
         if (s != null) {
             s.modifyPlayer(player);
         }
-        for (DynamicGameObject d : this.getDynamicGameObjects()) {
-            d.modifyPlayer(player);
+        queryDynamicGameObjectsAt(player.getX(), player.getY(), interactionBuffer);
+        for (int i = 0; i < interactionBuffer.size(); ++i) {
+            interactionBuffer.get(i).modifyPlayer(player);
         }
+        interactionBuffer.clear();
     }
 
     /**
-     * Updates all entities in the scene.
+     * Updates all entities in the scene. The game clock is advanced once at the beginning, so all entities see the same
+     * game time during the update. Objects added or removed during the update are added or removed at its end.
      *
-     * @param deltaTime time passed since last call
+     * @param deltaTime length of the simulation tick in milliseconds
      */
     public void updateEntities(int deltaTime) {
+        clock.advance(deltaTime);
+        maintainChunks();
+        deferChanges = true;
         doPlayerInteraction();
-        updateDynamicObjects(deltaTime);
+        updateDynamicObjects();
+        applyPendingChanges();
+        if (journal != null) {
+            journal.update(clock.getTime());
+        }
+    }
+
+    /**
+     * Enables or disables updating the moving traps on several cores at once. The outcome of an update is the same
+     * in both modes (see {@link ParallelUpdateCheck}). The parallel update is off unless enabled here.
+     *
+     * @param parallelUpdate whether large trap swarms should be updated in parallel
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        trapSwarm.setParallelUpdate(parallelUpdate);
+    }
+
+    /**
+     * Enables or disables the simulation level of detail: moving traps far away from the player are updated less
+     * often, and those even further away sleep until the player comes closer (see {@link TrapSwarm}). It is off by
+     * default, so every trap moves as usual.
+     *
+     * @param levelOfDetail whether far away moving traps should be simulated less
+     */
+    public void setLevelOfDetail(boolean levelOfDetail) {
+        trapSwarm.setLevelOfDetail(levelOfDetail);
+    }
+
+    /**
+     * Sets the distances to the player that separate the tiers of the simulation level of detail.
+     *
+     * @param nearRadius   moving traps up to this distance are fully simulated
+     * @param middleRadius moving traps up to this distance are updated less often, the ones further away sleep
+     */
+    public void setLevelOfDetailRadii(int nearRadius, int middleRadius) {
+        trapSwarm.setLevelOfDetailRadii(nearRadius, middleRadius);
+    }
+
+    /**
+     * Gets the game clock of the level. All timers of the objects in the level are based on it.
+     *
+     * @return game clock
+     */
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Pauses or resumes the game. While the game is paused, the game time stands still for every object in the level.
+     *
+     * @param paused whether the game should be paused
+     */
+    public void setPaused(boolean paused) {
+        clock.setPaused(paused);
+    }
+
+    /**
+     * Gets the journal recording the changes to the level.
+     *
+     * @return journal, or null if the changes are not recorded
+     */
+    public GameJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the journal that records the changes to the level from now on.
+     *
+     * @param journal journal, or null to stop recording
+     */
+    void setJournal(GameJournal journal) {
+        this.journal = journal;
     }
 
     /**
@@ -236,15 +765,16 @@ public class Level {
      */
     public void setPlayer(PlayerGameObject player) {
         this.player = player;
-        dynamicGameObjects.add(player);
+        scheduler.schedule(dynamicGameObjects.add(player), clock.getTime());
+        spatialIndex.insert(player, player.getX(), player.getY());
     }
 
     /**
      * Get all the static game objects in the scene
      *
-     * @return all static game objects in the scene as a 2D array
+     * @return all static game objects in the scene as a tile grid
      */
-    public StaticGameObject[][] getStaticGameObjects() {
+    public TileGrid getStaticGameObjects() {
         return staticGameObjects;
     }
 
@@ -267,11 +797,48 @@ public class Level {
     }
 
     /**
-     * Get all dynamic elements in the level
+     * Get all dynamic elements in the level, including the moving traps held by the trap swarm. The returned list is a
+     * read-only view, use the add and remove methods of the level to change its contents.
      *
      * @return all dynamic elements
      */
-    public ArrayList<DynamicGameObject> getDynamicGameObjects() {
-        return dynamicGameObjects;
+    public List<DynamicGameObject> getDynamicGameObjects() {
+        return allDynamicGameObjects;
+    }
+
+    /**
+     * Get the swarm holding all moving traps of the level
+     *
+     * @return trap swarm
+     */
+    public TrapSwarm getTrapSwarm() {
+        return trapSwarm;
+    }
+
+    /**
+     * Get the flow field leading the moving traps towards the player
+     *
+     * @return flow field
+     */
+    public FlowField getFlowField() {
+        return flowField;
+    }
+
+    /**
+     * Get the path graph leading the moving traps towards the player on large levels
+     *
+     * @return path graph, or null if the level does not have one
+     */
+    public PathGraph getPathGraph() {
+        return pathGraph;
+    }
+
+    /**
+     * Sets the path graph of the level. It has to describe the tiles of the level as they are now.
+     *
+     * @param pathGraph path graph, or null
+     */
+    void setPathGraph(PathGraph pathGraph) {
+        this.pathGraph = pathGraph;
     }
 }
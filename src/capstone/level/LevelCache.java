@@ -0,0 +1,149 @@
+package capstone.level;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The level cache keeps the layouts of recently read levels in memory, so loading the same level (or save) again does
+ * not need to read and parse the file again. Every entry is keyed by the canonical path of the file and remembers the
+ * modification date and length of the file, so a changed file is read again. The cache only holds a limited amount of
+ * memory; once it is full, the level that was used least recently is dropped.
+ */
+public class LevelCache {
+    private static final long DEFAULT_MAXIMUM_SIZE = 64L << 20; //64 MB
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private static long size;
+    private static int hitCount;
+    private static int missCount;
+
+    /**
+     * A cached level along with the state of the file it was read from.
+     */
+    private static class Entry {
+        final long lastModified;
+        final long length;
+        final LevelTemplate template;
+        final long size;
+
+        Entry(long lastModified, long length, LevelTemplate template) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.template = template;
+            this.size = template.getSizeInBytes();
+        }
+    }
+
+    /**
+     * Creates a new level from the cached layout of a file, if the file has not changed since it was cached.
+     *
+     * @param file level file
+     * @return new level with fresh player and traps, or null if the file is not cached
+     * @throws IOException in case the canonical path of the file could not be determined
+     */
+    static synchronized Level get(File file) throws IOException {
+        Entry entry = entries.get(file.getCanonicalPath());
+        //a cached diff save is only valid as long as the level it is based on is unchanged
+        if (entry == null || entry.lastModified != file.lastModified() || entry.length != file.length()
+                || !entry.template.isBaseUnchanged()) {
+            ++missCount;
+            return null;
+        }
+        ++hitCount;
+        return entry.template.createLevel();
+    }
+
+    /**
+     * Caches the layout of a freshly read level. From now on the level shares its tiles with the cache and copies them
+     * before changing them.
+     *
+     * @param file  level file the level was read from
+     * @param level the freshly read level
+     * @throws IOException in case the canonical path of the file could not be determined
+     */
+    static synchronized void put(File file, Level level) throws IOException {
+        Entry entry = new Entry(file.lastModified(), file.length(), new LevelTemplate(level));
+        if (entry.size > maximumSize) {
+            return;
+        }
+        Entry previous = entries.put(file.getCanonicalPath(), entry);
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += entry.size;
+        trim();
+    }
+
+    /**
+     * Drops the cached layout of a file, for instance because the file is about to be overwritten.
+     *
+     * @param file level file
+     * @throws IOException in case the canonical path of the file could not be determined
+     */
+    static synchronized void remove(File file) throws IOException {
+        Entry entry = entries.remove(file.getCanonicalPath());
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * Drops the least recently used levels until the cache fits into its maximum size.
+     */
+    private static void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > maximumSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            size -= eldest.getValue().size;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Sets the amount of memory the cache may take up. Levels are dropped immediately if it is exceeded.
+     *
+     * @param maximumSize maximum size in bytes
+     */
+    public static synchronized void setMaximumSize(long maximumSize) {
+        LevelCache.maximumSize = maximumSize;
+        trim();
+    }
+
+    /**
+     * Drops all cached levels. The hit and miss counters are kept.
+     */
+    public static synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Gets how often a level could be taken from the cache.
+     *
+     * @return number of cache hits
+     */
+    public static synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets how often a level had to be read from its file.
+     *
+     * @return number of cache misses
+     */
+    public static synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the estimated amount of memory the cached levels take up.
+     *
+     * @return size in bytes
+     */
+    public static synchronized long getSize() {
+        return size;
+    }
+}
@@ -1,11 +1,10 @@
 package capstone.level;
 
-import capstone.gameobject.staticObjects.StaticGameObject;
-
 public class LevelHelper {
 
     /**
-     * Checks whether a given field is walkable by player or computer. This is a fast way of doing collision-detection.
+     * Checks whether a given field is walkable by player or computer. This is a fast way of doing collision-detection,
+     * since the tile grid keeps the walkability of every field in a bitset (see {@link TileGrid#isWalkable}).
      * It also distinguishes whether the surface is player walkable or computer walkable.
      *
      * @param l        Level in which the collision check is supposed to be done
@@ -15,20 +14,6 @@ public class LevelHelper {
      * @return is a surface walkable
      */
     public static boolean checkWalkable(Level l, int x, int y, boolean isPlayer) {
-        StaticGameObject[][] s = l.getStaticGameObjects();
-        if (x < 0 || y < 0 || y >= s.length || x >= s[0].length) {
-            //object tried to walk out of bounds
-            return false;
-        }
-        StaticGameObject location = l.getStaticGameObjects()[x][y];
-        if (location == null) {
-            //empty space
-            return true;
-        }
-        if (isPlayer) {
-            return location.isPlayerWalkable();
-        } else {
-            return location.isComputerWalkable();
-        }
+        return l.getStaticGameObjects().isWalkable(x, y, isPlayer);
     }
 }
@@ -1,136 +1,311 @@
 package capstone.level;
 
 import capstone.ScoringHelper;
-import capstone.gameobject.dynamicObjects.DynamicGameObject;
-import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
-import capstone.gameobject.dynamicObjects.PlayerGameObject;
-import capstone.gameobject.staticObjects.*;
 import capstone.notificationcenter.NotificationCenter;
 import capstone.notificationcenter.NotificationMessage;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The Level IO class provides static methods for saving and reading levels in the format that is outlined by the
- * capstone documentation.
+ * capstone documentation, as well as in the compact binary format (see {@link BinaryLevelFile}).
  */
 public class LevelInputOutput {
+    public static final String SAVE_FILENAME = "save" + BinaryLevelFile.ENDING;
+    //saves of earlier versions of the game, still loaded as long as there is no newer save
+    public static final String LEGACY_SAVE_FILENAME = "save.properties";
+    //levels with more chunks than this get a binary copy, smaller ones are simply kept in memory
+    private static final int CHUNK_CACHE_THRESHOLD = 16;
+    private static boolean pathGraphEnabled = true;
+    //levels are read and saved in the background one after another, so the game keeps running meanwhile
+    private static final ExecutorService loader = newWorker("Level loader");
+    private static final ExecutorService saver = newWorker("Level saver");
 
     /**
-     * Reads and prepares a level for usage within the game
+     * Creates a background thread that runs tasks one after another.
+     *
+     * @param name name of the thread
+     * @return executor running the tasks
+     */
+    private static ExecutorService newWorker(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads and prepares a level for usage within the game. The format of the file (properties or binary) is detected
+     * automatically. Large properties levels get a binary copy, so they can be read quickly next time and only the
+     * parts of the level that are actually used are held in memory. Levels that were read before are taken from the
+     * {@link LevelCache} as long as their file has not changed. Levels too large for the flow field of the moving traps
+     * get a {@link PathGraph}, unless that has been disabled.
      *
      * @param filename file to be read relative to source path
-     * @return a level object with all the information from the properties file.
+     * @return a level object with all the information from the file.
      * @throws IOException
      */
     public static Level readLevel(String filename) throws IOException {
-        Properties prop = new Properties();
-        FileInputStream fileInputStream = new FileInputStream(filename);
-        prop.load(fileInputStream);
-        int width = Integer.parseInt(prop.getProperty("Width"));
-        int height = Integer.parseInt(prop.getProperty("Height"));
-        ScoringHelper.setHeight(height);
-        ScoringHelper.setWidth(width);
-        Level level = new Level(width, height);
-        for (int x = 0; x < width; ++x) {
-            for (int y = 0; y < height; ++y) {
-                int field = Integer.parseInt(prop.getProperty(x + "," + y, "-1"));
-                if (field == -1) {
-                    continue;
-                }
-                switch (field) {
-                    case 0:
-                        level.addStaticGameObject(new WallGameObject(), x, y);
-                        break;
-                    case 1:
-                        level.addStaticGameObject(new EntranceGameObject(), x, y);
-                        if (prop.getProperty("playerX") == null) {
-                            // it's not a player save, hence we generate a new object
-                            level.setPlayer(new PlayerGameObject(x, y, 5, level, false));
-                        }
-                        break;
-                    case 2:
-                        level.addStaticGameObject(new ExitGameObject(), x, y);
-                        break;
-                    case 3:
-                        level.addStaticGameObject(new StaticTrapGameObject(), x, y);
-                        break;
-                    case 4:
-                        level.addDynamicGameobject(new MovingTrapGameObject(x, y, level));
-                        break;
-                    case 5:
-                        level.addStaticGameObject(new KeyGameObject(), x, y);
-                        break;
-                    case 6:
-                        level.addStaticGameObject(new HealthGameObject(), x, y);
-                    default:
-                }
+        Level level = read(filename, new LevelLoadProgress());
+        preparePathGraph(level, new File(filename), new LevelLoadProgress());
+        announceLevel(level);
+        return level;
+    }
+
+    /**
+     * Reads the save file. Saves are written to SAVE_FILENAME; if there is none yet, a save in the properties format
+     * of earlier versions of the game (LEGACY_SAVE_FILENAME) is read instead.
+     *
+     * @return the saved level
+     * @throws IOException in case neither save file could be read
+     */
+    public static Level readSave() throws IOException {
+        if (!new File(SAVE_FILENAME).isFile() && new File(LEGACY_SAVE_FILENAME).isFile()) {
+            return readLevel(LEGACY_SAVE_FILENAME);
+        }
+        return readLevel(SAVE_FILENAME);
+    }
+
+    /**
+     * Reads a level in the background, see {@link #readLevel(String)}. The future completes with the level, with the
+     * exception that made reading fail, or is cancelled if the progress is cancelled. Once the level has been taken
+     * from the future, {@link #announceLevel(Level)} has to be called on the thread running the game.
+     *
+     * @param filename file to be read relative to source path
+     * @param progress progress to report to while reading, also used to cancel the reading
+     * @return future level
+     */
+    public static CompletableFuture<Level> readLevelAsync(String filename, LevelLoadProgress progress) {
+        CompletableFuture<Level> future = new CompletableFuture<>();
+        loader.execute(() -> {
+            try {
+                Level level = read(filename, progress);
+                //reading from a cache or a binary file may not check for cancellation, so check between the stages
+                progress.checkCancelled();
+                preparePathGraph(level, new File(filename), progress);
+                progress.checkCancelled();
+                future.complete(level);
+            } catch (CancellationException ex) {
+                future.cancel(false);
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
             }
+        });
+        return future;
+    }
+
+    /**
+     * Gives a level a path graph if it is too large for the flow field of the moving traps to cover it.
+     *
+     * @param level     freshly read level
+     * @param levelFile file the level was read from, the path graph is stored next to it (null to not store it)
+     * @param progress  progress of the reading of the level, the path graph is not prepared once it is cancelled
+     * @throws CancellationException in case the reading has been cancelled
+     */
+    static void preparePathGraph(Level level, File levelFile, LevelLoadProgress progress) {
+        if (!pathGraphEnabled || (level.getLevelWidth() <= FlowField.RADIUS && level.getLevelHeight() <= FlowField.RADIUS)) {
+            return;
+        }
+        PathGraph pathGraph = levelFile != null ? PathGraph.readOrBuild(level, levelFile, progress) : PathGraph.build(level.getStaticGameObjects(), progress);
+        level.setPathGraph(pathGraph);
+    }
+
+    /**
+     * Whether levels that are read get a path graph for their moving traps.
+     *
+     * @return path graphs are enabled
+     */
+    public static boolean isPathGraphEnabled() {
+        return pathGraphEnabled;
+    }
+
+    /**
+     * Enables or disables the path graphs of levels that are read from now on. Without one, moving traps far away
+     * from the player simply head towards him.
+     *
+     * @param pathGraphEnabled whether levels get a path graph
+     */
+    public static void setPathGraphEnabled(boolean pathGraphEnabled) {
+        LevelInputOutput.pathGraphEnabled = pathGraphEnabled;
+    }
+
+    /**
+     * Reads a level from a file or takes it from the cache.
+     *
+     * @param filename file to be read relative to source path
+     * @param progress progress to report to while reading
+     * @return the level
+     * @throws IOException in case the file could not be read or does not describe a level
+     */
+    private static Level read(String filename, LevelLoadProgress progress) throws IOException {
+        File levelFile = new File(filename);
+        progress.setTotalBytes(levelFile.length());
+        Level level = LevelCache.get(levelFile);
+        if (level == null) {
+            level = readFile(levelFile, progress);
+            if (!level.isSave()) {
+                //saves of this level only need to store how they differ from it
+                level.setBase(BaseLevel.of(levelFile));
+            }
+            LevelCache.put(levelFile, level);
         }
-        if (prop.getProperty("playerX") != null) {
-            //for simplicity's sake we assume that once playerX exists, a full set of player info exists.
-            int playerX = Integer.parseInt(prop.getProperty("playerX"));
-            int playerY = Integer.parseInt(prop.getProperty("playerY"));
-            int playerLives = Integer.parseInt(prop.getProperty("playerLives"));
-            int playerScore = Integer.parseInt(prop.getProperty("playerScore"));
-            boolean playerHasKey = Boolean.parseBoolean(prop.getProperty("playerHaskey"));
-            level.setPlayer(new PlayerGameObject(playerX, playerY, playerLives, level, playerHasKey));
-            level.getPlayer().setScore(playerScore);
+        level.setLevelName(filename);
+        progress.finish();
+        return level;
+    }
+
+    /**
+     * Reads a level from a file in whatever format it is, bypassing the cache.
+     *
+     * @param levelFile file to be read
+     * @param progress  progress to report to while reading
+     * @return the level
+     * @throws IOException in case the file could not be read or does not describe a level
+     */
+    static Level readFile(File levelFile, LevelLoadProgress progress) throws IOException {
+        if (DiffLevelFile.isDiffLevel(levelFile)) {
+            return DiffLevelFile.readLevel(levelFile);
+        }
+        if (BinaryLevelFile.isBinaryLevel(levelFile)) {
+            return BinaryLevelFile.readLevel(levelFile);
+        }
+        Level level = BinaryLevelFile.readCachedLevel(levelFile);
+        if (level == null) {
+            level = PropertiesLevelFile.readLevel(levelFile, progress);
+            if (level.getStaticGameObjects().getChunkCount() > CHUNK_CACHE_THRESHOLD) {
+                BinaryLevelFile.writeCachedLevel(levelFile, level);
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Reads the level a save is based on (see {@link DiffLevelFile}), usually from the cache.
+     *
+     * @param file base level file
+     * @return the level
+     * @throws IOException in case the file could not be read or does not describe a level
+     */
+    static Level readBaseLevel(File file) throws IOException {
+        return read(file.getPath(), new LevelLoadProgress());
+    }
+
+    /**
+     * Makes a freshly read level known to the rest of the game: the scoring is adjusted to its size, and a notification
+     * tells whether a level or a save was loaded. A player that does not come from a save starts with the base score
+     * of the level.
+     *
+     * @param level freshly read level
+     */
+    public static void announceLevel(Level level) {
+        ScoringHelper.setHeight(level.getLevelHeight());
+        ScoringHelper.setWidth(level.getLevelWidth());
+        if (!level.isSave() && level.getPlayer() != null) {
+            level.getPlayer().setScore(ScoringHelper.getBaseValue());
+        }
+        if (level.isSave()) {
             NotificationCenter.postNotification(NotificationMessage.SAVE_LOAD_SUCCESS);
         } else {
             NotificationCenter.postNotification(NotificationMessage.LEVEL_LOAD_SUCCESS);
         }
-        level.setLevelName(filename);
-        fileInputStream.close();
-        return level;
     }
 
     /**
      * Saves a level to a file with all its data in accordance to the specifications given by the capstone project.
      * It also stores the player information such as location, whether he posesses a key, how many lives he has left,
      * and what his score is. All of the information encoded in this way can in return be read by this game again.
+     * If the filename ends in .level, the level is saved in the binary format instead. If the level was started from a
+     * level file that is still unchanged, only the differences to that file are saved (see {@link DiffLevelFile}).
      *
      * @param l        Level object to be saved
      * @param filename Filename for the save file
      * @throws IOException
      */
     public static void writeLevel(Level l, String filename) throws IOException {
-        ArrayList<DynamicGameObject> dynamicGameObjects = l.getDynamicGameObjects();
-        StaticGameObject[][] staticGameObjects = l.getStaticGameObjects();
-        PlayerGameObject playerGameObject = l.getPlayer();
-        Properties prop = new Properties();
-        FileOutputStream fileOutputStream = new FileOutputStream(filename);
-        prop.setProperty("Height", Integer.toString(staticGameObjects.length));
-        prop.setProperty("Width", Integer.toString(staticGameObjects[0].length));
-
-        for (int y = 0; y < staticGameObjects[0].length; ++y) {
-            for (int x = 0; x < staticGameObjects.length; ++x) {
-                //we assume they are always rectangles.
-                StaticGameObject s = staticGameObjects[x][y];
-                String representation = SaveFileHelper.getSavegameCharacterRepresentation(s);
-                if (representation != null) {
-                    prop.setProperty(x + "," + y, representation);
-                }
+        LevelCache.remove(new File(filename));
+        if (filename.endsWith(BinaryLevelFile.ENDING)) {
+            if (DiffLevelFile.canWrite(l, new File(filename))) {
+                DiffLevelFile.writeLevel(l, new File(filename));
+            } else {
+                BinaryLevelFile.writeLevel(l, new File(filename));
             }
+            NotificationCenter.postNotification(NotificationMessage.SAVE_SAVE_SUCCESS);
+            return;
         }
-        for (DynamicGameObject d : dynamicGameObjects) {
-            if (d.isSavable()) {
-                prop.setProperty(d.getX() + "," + d.getY(), SaveFileHelper.getSavegameCharacterRepresentation(d));
+        PropertiesLevelFile.writeLevel(l, new File(filename));
+        NotificationCenter.postNotification(NotificationMessage.SAVE_SAVE_SUCCESS);
+    }
+
+    /**
+     * Saves a level in the background, see {@link #writeLevel(Level, String)}. Only a snapshot of the level is taken
+     * right away, which shares the tiles with the level (they are copied once the running level changes them) and copies
+     * the positions of the traps and the player information. The file is then written from the snapshot while the game
+     * goes on. Once it has been written, SAVE_SAVE_SUCCESS is posted.
+     *
+     * @param l        Level object to be saved
+     * @param filename Filename for the save file
+     * @return future that completes once the file has been written, or with the exception that made writing fail
+     */
+    public static CompletableFuture<Void> writeLevelAsync(Level l, String filename) {
+        return writeSnapshot(new LevelTemplate(l), new File(filename))
+                .thenRun(() -> NotificationCenter.postNotification(NotificationMessage.SAVE_SAVE_SUCCESS));
+    }
+
+    /**
+     * Writes a snapshot of a level on the background thread for saving. Snapshots are written one after another in the
+     * order they were handed in.
+     *
+     * @param snapshot snapshot of a level
+     * @param file     file to be written, in the binary format if it ends in .level
+     * @return future that completes once the file has been written, or with the exception that made writing fail
+     */
+    static CompletableFuture<Void> writeSnapshot(LevelTemplate snapshot, File file) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        saver.execute(() -> {
+            try {
+                LevelCache.remove(file);
+                if (file.getName().endsWith(BinaryLevelFile.ENDING)) {
+                    Level level = snapshot.createLevel();
+                    if (DiffLevelFile.canWrite(level, file)) {
+                        DiffLevelFile.writeLevel(level, file);
+                    } else {
+                        BinaryLevelFile.writeSnapshot(level, file);
+                    }
+                } else {
+                    PropertiesLevelFile.writeLevel(snapshot.createLevel(), file);
+                }
+                future.complete(null);
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
             }
+        });
+        return future;
+    }
+
+    /**
+     * Replaces a file by a freshly written temporary file. The file is renamed atomically where the file system allows
+     * it, so there is either the complete old file or the complete new file, never a half written one.
+     *
+     * @param temporaryFile freshly written file
+     * @param file          file to be replaced
+     * @throws IOException in case the file could not be replaced
+     */
+    static void replaceFile(File temporaryFile, File file) throws IOException {
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        prop.setProperty("playerX", Integer.toString(playerGameObject.getX()));
-        prop.setProperty("playerY", Integer.toString(playerGameObject.getY()));
-        prop.setProperty("playerLives", Integer.toString(playerGameObject.getLives()));
-        prop.setProperty("playerScore", Integer.toString(playerGameObject.getScore()));
-        prop.setProperty("playerHaskey", Boolean.toString(playerGameObject.isHasKey()));
-        prop.store(fileOutputStream, null);
-        NotificationCenter.postNotification(NotificationMessage.SAVE_SAVE_SUCCESS);
-        fileOutputStream.close();
     }
 
     public static ArrayList<String> getAvailableLevels() {
@@ -142,7 +317,7 @@ public class LevelInputOutput {
             return names;
         }
         for (File f : filesList) {
-            if (f.isFile() && f.getName().contains(".properties")) {
+            if (f.isFile() && (f.getName().endsWith(".properties") || f.getName().endsWith(BinaryLevelFile.ENDING))) {
                 names.add(f.getName());
             }
         }
@@ -0,0 +1,99 @@
+package capstone.level;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * The level load progress tells how far a level that is read in the background has come, and allows cancelling the
+ * reading. It is written by the thread reading the level and may be read by any other thread.
+ */
+public class LevelLoadProgress {
+    private volatile long bytesRead;
+    private volatile long totalBytes;
+    private volatile boolean cancelled;
+
+    /**
+     * Gets how many bytes of the level file have been read so far.
+     *
+     * @return bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Gets the length of the level file.
+     *
+     * @return length of the file in bytes (0 if not known yet)
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Gets how much of the level file has been read so far.
+     *
+     * @return percentage between 0 and 100
+     */
+    public int getPercentage() {
+        long total = totalBytes;
+        if (total <= 0) {
+            return 0;
+        }
+        return (int) Math.min(100, bytesRead * 100 / total);
+    }
+
+    /**
+     * Asks the thread reading the level to stop. The reading is aborted the next time the thread checks for it.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether the reading has been cancelled.
+     *
+     * @return reading has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Sets the length of the level file.
+     *
+     * @param totalBytes length of the file in bytes
+     */
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Reports that more of the level file has been read and aborts the reading if it has been cancelled.
+     *
+     * @param bytes number of bytes read since the last report
+     * @throws CancellationException in case the reading has been cancelled
+     */
+    void addBytesRead(long bytes) {
+        bytesRead += bytes; //only ever written by the reading thread
+        checkCancelled();
+    }
+
+    /**
+     * Aborts the reading if it has been cancelled. Called in between the stages of preparing a level, and regularly
+     * during the stages that take long.
+     *
+     * @throws CancellationException in case the reading has been cancelled
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Reading the level was cancelled");
+        }
+    }
+
+    /**
+     * Reports that the level file has been read completely.
+     */
+    void finish() {
+        bytesRead = totalBytes;
+    }
+}
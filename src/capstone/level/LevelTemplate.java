@@ -0,0 +1,98 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
+import capstone.gameobject.dynamicObjects.PlayerGameObject;
+import capstone.gameobject.dynamicObjects.TrapSwarm;
+
+/**
+ * A level template is the immutable base layout of a level as it was read from a file: the static tiles, the starting
+ * positions of the moving traps and the player information. Any number of levels can be created from it. They all
+ * share the chunks of the template and only copy the chunks they change, so creating a level from a template is cheap.
+ * <p>
+ * Since taking a template only copies references to chunks and the positions of the traps, it also serves as the
+ * snapshot of a running level that is saved in the background.
+ */
+class LevelTemplate {
+    private final int width;
+    private final int height;
+    private final TileChunk[] chunks;
+    private final ChunkSource chunkSource;
+    private final int[] traps; //x and y of every moving trap
+    private final boolean save;
+    private final BaseLevel base;
+    private final int playerX;
+    private final int playerY;
+    private final int playerLives;
+    private final int playerScore;
+    private final boolean playerHasKey;
+
+    /**
+     * Creates a template from a level. The chunks of the level are shared with the template from now on.
+     *
+     * @param level freshly read or running level
+     */
+    LevelTemplate(Level level) {
+        TileGrid grid = level.getStaticGameObjects();
+        this.width = level.getLevelWidth();
+        this.height = level.getLevelHeight();
+        this.chunks = grid.shareChunks();
+        this.chunkSource = grid.getChunkSource();
+        TrapSwarm trapSwarm = level.getTrapSwarm();
+        this.traps = new int[trapSwarm.size() * 2];
+        for (int i = 0; i < trapSwarm.size(); ++i) {
+            traps[2 * i] = trapSwarm.getTrap(i).getX();
+            traps[2 * i + 1] = trapSwarm.getTrap(i).getY();
+        }
+        PlayerGameObject player = level.getPlayer();
+        this.save = level.isSave();
+        this.base = level.getBase();
+        this.playerX = player.getX();
+        this.playerY = player.getY();
+        this.playerLives = player.getLives();
+        this.playerScore = player.getScore();
+        this.playerHasKey = player.isHasKey();
+    }
+
+    /**
+     * Creates a new level from the template, with a fresh player and fresh moving traps.
+     *
+     * @return new level
+     */
+    Level createLevel() {
+        Level level = new Level(width, height);
+        level.getStaticGameObjects().adoptChunks(chunks, chunkSource);
+        level.setPlayer(new PlayerGameObject(playerX, playerY, playerLives, level, playerHasKey));
+        level.getPlayer().setScore(playerScore);
+        level.setSave(save);
+        level.setBase(base);
+        for (int i = 0; i < traps.length; i += 2) {
+            level.addDynamicGameobject(new MovingTrapGameObject(traps[i], traps[i + 1], level));
+        }
+        return level;
+    }
+
+    /**
+     * Whether the level file the template is based on is unchanged. Templates without a base level are always
+     * considered unchanged.
+     *
+     * @return base level is unchanged or unknown
+     */
+    boolean isBaseUnchanged() {
+        return base == null || base.isUnchanged();
+    }
+
+    /**
+     * Estimates how much memory the template takes up.
+     *
+     * @return estimated size in bytes
+     */
+    long getSizeInBytes() {
+        long size = 64 + 4L * chunks.length + 4L * traps.length;
+        for (TileChunk chunk : chunks) {
+            if (chunk != null) {
+                size += TileChunk.AREA + 2 * 8 * TileChunk.SIZE + 64;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,106 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
+import capstone.gameobject.dynamicObjects.TrapSwarm;
+
+import java.util.Random;
+
+/**
+ * Checks that the parallel update of the moving traps (see {@link Level#setParallelUpdate(boolean)}) gives exactly the
+ * same result as the serial one. Two copies of a generated level are simulated side by side, one of them in parallel,
+ * and the positions and representations of all traps are compared after every tick.
+ * <p>
+ * Usage: {@code java capstone.level.ParallelUpdateCheck [traps] [ticks]}, by default 100000 traps for 1000 ticks. The
+ * program exits with status 1 if the two copies differ.
+ */
+public class ParallelUpdateCheck {
+    private static final int DEFAULT_TRAPS = 100000;
+    private static final int DEFAULT_TICKS = 1000;
+    private static final int TICK_MILLIS = 10;
+    private static final long SEED = 42;
+
+    /**
+     * Runs the check.
+     *
+     * @param args amount of traps and amount of ticks (both optional)
+     */
+    public static void main(String[] args) {
+        int traps = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TRAPS;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+        //room for about ten fields per trap
+        int side = Math.max(64, (int) Math.sqrt(traps * 10.0));
+        Level serial = createLevel(side, traps, false);
+        Level parallel = createLevel(side, traps, true);
+        for (int tick = 1; tick <= ticks; ++tick) {
+            serial.updateEntities(TICK_MILLIS);
+            parallel.updateEntities(TICK_MILLIS);
+            serial.clearDirtyCells();
+            parallel.clearDirtyCells();
+            int difference = findDifference(serial.getTrapSwarm(), parallel.getTrapSwarm());
+            if (difference >= 0 || serial.getPlayer().getLives() != parallel.getPlayer().getLives()) {
+                System.out.println("The parallel update differs from the serial one in tick " + tick
+                        + (difference >= 0 ? " at trap " + difference : " in the lives of the player") + ".");
+                System.exit(1);
+            }
+        }
+        System.out.println("The parallel update of " + serial.getTrapSwarm().size() + " traps matched the serial one for "
+                + ticks + " ticks.");
+    }
+
+    /**
+     * Generates a square level with a pattern of walls, the player in the middle and traps on random free fields. The
+     * same arguments always give the same level.
+     *
+     * @param side     width and height of the level
+     * @param traps    amount of moving traps
+     * @param parallel whether the traps are updated in parallel
+     * @return generated level
+     */
+    private static Level createLevel(int side, int traps, boolean parallel) {
+        Level level = new Level(side, side, SEED);
+        for (int y = 0; y < side; ++y) {
+            for (int x = 0; x < side; ++x) {
+                if (x == 0 || y == 0 || x == side - 1 || y == side - 1 || (x % 7 == 3 && y % 5 != 0)) {
+                    level.setTileType(x, y, TileGrid.WALL);
+                }
+            }
+        }
+        level.generatePlayerAtPosition(side / 2 + 1, side / 2);
+        level.setPlayer(level.getPlayer());
+        Random random = new Random(SEED);
+        for (int i = 0; i < traps; ++i) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(side);
+                y = random.nextInt(side);
+            } while (!level.getStaticGameObjects().isWalkable(x, y, false));
+            level.addDynamicGameobject(new MovingTrapGameObject(x, y, level));
+        }
+        //all traps stay awake, so every tick hands many of them to the update
+        level.setLevelOfDetail(false);
+        level.setParallelUpdate(parallel);
+        return level;
+    }
+
+    /**
+     * Compares the traps of two swarms.
+     *
+     * @param a first swarm
+     * @param b second swarm
+     * @return index of the first trap that differs, or -1 if all are the same
+     */
+    private static int findDifference(TrapSwarm a, TrapSwarm b) {
+        if (a.size() != b.size()) {
+            return Math.min(a.size(), b.size());
+        }
+        for (int i = 0; i < a.size(); ++i) {
+            MovingTrapGameObject s = a.getTrap(i);
+            MovingTrapGameObject p = b.getTrap(i);
+            if (s.getX() != p.getX() || s.getY() != p.getY() || s.getRepresentation() != p.getRepresentation()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
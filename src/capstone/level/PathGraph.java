@@ -0,0 +1,801 @@
+package capstone.level;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The path graph lets the moving traps find the player on levels that are much larger than the {@link FlowField}
+ * covers. Searching the whole level for every move of the player would be far too slow, so the level is split up into
+ * clusters of 16x16 fields, and the search happens on a much smaller graph describing how the clusters are connected
+ * (hierarchical path finding, like HPA*):
+ * <ul>
+ * <li>Wherever two neighbouring clusters can be walked across their common border, there is an entrance: a pair of
+ * nodes, one on either side of the border, one step apart. Short openings get one entrance in their middle, long ones
+ * one at either end.</li>
+ * <li>Within a cluster, the amount of steps between any two of its nodes is computed once when the graph is built.</li>
+ * </ul>
+ * Once the player has moved to another cluster, the distance of every node to the player is computed on the graph.
+ * A trap asking for directions then only needs the way out of its own cluster: for every cluster a trap asks about, a
+ * small field of directions leading to the best node of the cluster is computed and kept until the player changes
+ * cluster again. Paths found this way are not always the shortest, but close to it.
+ * <p>
+ * When tiles change during the game (keys picked up, ...), the affected clusters are rebuilt before the next search.
+ * Building the graph for a large level means looking at every field, so it is stored next to the level file (ending in
+ * .paths) and read from there as long as the level file has not changed.
+ * <p>
+ * Directions are encoded the same way the moving traps use them: 0 => up, 1 => down, 2 => left, 3 => right.
+ */
+public class PathGraph {
+    private static final int MAGIC = 0x43505448; //"CPTH"
+    private static final int VERSION = 1;
+    private static final String CACHE_ENDING = ".paths";
+    private static final int CLUSTER_SHIFT = 4;
+    private static final int CLUSTER_SIZE = 1 << CLUSTER_SHIFT; //fields per side of a cluster
+    private static final int CLUSTER_AREA = CLUSTER_SIZE * CLUSTER_SIZE;
+    //at most every second field of a side can start an opening, and each opening gets at most one node per field
+    private static final int MAX_NODES = 2 * CLUSTER_SIZE;
+    private static final int LONG_OPENING = 6; //openings at least this long get an entrance at either end
+    private static final short UNREACHABLE = -1;
+    //sides of a cluster, numbered like the directions that lead across them
+    private static final byte TOP = FlowField.UP;
+    private static final byte BOTTOM = FlowField.DOWN;
+    private static final byte LEFT = FlowField.LEFT;
+    private static final byte RIGHT = FlowField.RIGHT;
+
+    private final TileGrid grid;
+    private final int width;
+    private final int height;
+    private final int clustersX;
+    private final int clustersY;
+    //nodes of cluster c are stored at c * MAX_NODES + i
+    private final int[] nodeCounts;
+    private final short[] nodeCells; //field within the cluster
+    private final byte[] nodeSides; //side of the cluster the entrance of a node is on
+    private final byte[] partners; //index of the node on the other side of the border, within the neighbouring cluster
+    private final short[][] clusterDistances; //steps between any two nodes of a cluster, i * count + j
+    private final BitSet dirtyClusters = new BitSet();
+
+    //result of the last search: distance of every node to the target
+    private final int[] nodeDistances;
+    private final int[] nodeSearches; //search during which the distance of a node was found
+    private int search;
+    private boolean searched;
+    private int targetX;
+    private int targetY;
+    private long[] heap = new long[256];
+    //directions within the clusters traps have asked about, valid as long as they belong to the current search
+    private final ClusterField[] fields;
+
+    //buffers used while building clusters and fields (only ever by one thread at a time)
+    private final boolean[] walkable = new boolean[CLUSTER_AREA];
+    private final int[] localDistances = new int[CLUSTER_AREA];
+    private final int[] queue = new int[CLUSTER_AREA];
+
+    /**
+     * Creates an empty path graph for the tiles of a level. The clusters still need to be built or read.
+     *
+     * @param grid tiles of the level
+     */
+    private PathGraph(TileGrid grid) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.clustersX = (width + CLUSTER_SIZE - 1) >> CLUSTER_SHIFT;
+        this.clustersY = (height + CLUSTER_SIZE - 1) >> CLUSTER_SHIFT;
+        int clusters = clustersX * clustersY;
+        nodeCounts = new int[clusters];
+        nodeCells = new short[clusters * MAX_NODES];
+        nodeSides = new byte[clusters * MAX_NODES];
+        partners = new byte[clusters * MAX_NODES];
+        clusterDistances = new short[clusters][];
+        nodeDistances = new int[clusters * MAX_NODES];
+        nodeSearches = new int[clusters * MAX_NODES];
+        fields = new ClusterField[clusters];
+    }
+
+    /**
+     * Builds the path graph for the tiles of a level by looking at every field.
+     *
+     * @param grid tiles of the level
+     * @return the path graph
+     */
+    public static PathGraph build(TileGrid grid) {
+        return build(grid, new LevelLoadProgress());
+    }
+
+    /**
+     * Builds the path graph for the tiles of a level by looking at every field. The building is aborted as soon as
+     * the reading of the level is cancelled.
+     *
+     * @param grid     tiles of the level
+     * @param progress progress of the reading of the level
+     * @return the path graph
+     * @throws java.util.concurrent.CancellationException in case the reading has been cancelled
+     */
+    static PathGraph build(TileGrid grid, LevelLoadProgress progress) {
+        PathGraph graph = new PathGraph(grid);
+        for (int cluster = 0; cluster < graph.nodeCounts.length; ++cluster) {
+            progress.checkCancelled();
+            graph.buildNodes(cluster);
+        }
+        for (int cluster = 0; cluster < graph.nodeCounts.length; ++cluster) {
+            progress.checkCancelled();
+            graph.link(cluster);
+            graph.buildDistances(cluster);
+        }
+        return graph;
+    }
+
+    /**
+     * Gets the path graph of a level from the file next to the level file, or builds it and stores it there. The file
+     * is only used as long as the level file has not changed. Both reading and building are aborted as soon as the
+     * reading of the level is cancelled; the file is then left as it is.
+     *
+     * @param level     freshly read level
+     * @param levelFile file the level was read from
+     * @param progress  progress of the reading of the level
+     * @return the path graph
+     * @throws java.util.concurrent.CancellationException in case the reading has been cancelled
+     */
+    static PathGraph readOrBuild(Level level, File levelFile, LevelLoadProgress progress) {
+        File cacheFile = new File(levelFile.getPath() + CACHE_ENDING);
+        if (cacheFile.isFile()) {
+            try {
+                PathGraph graph = read(level.getStaticGameObjects(), cacheFile, levelFile, progress);
+                if (graph != null) {
+                    return graph;
+                }
+                //the file is outdated and is written again
+            } catch (IOException ex) {
+                //the file is written again below
+                ex.printStackTrace();
+            }
+        }
+        PathGraph graph = build(level.getStaticGameObjects(), progress);
+        try {
+            graph.write(cacheFile, levelFile.length(), levelFile.lastModified());
+        } catch (IOException ex) {
+            //the path graph is simply built again next time
+            ex.printStackTrace();
+        }
+        return graph;
+    }
+
+    /**
+     * Reads a path graph from a file.
+     *
+     * @param grid      tiles of the level
+     * @param file      path graph file
+     * @param levelFile level file the path graph was built for
+     * @param progress  progress of the reading of the level, checked for cancellation
+     * @return the path graph, or null if it does not belong to the level file in its current state
+     * @throws IOException in case the file could not be read
+     */
+    private static PathGraph read(TileGrid grid, File file, File levelFile, LevelLoadProgress progress) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a path graph file");
+            }
+            if (in.readInt() != VERSION || in.readLong() != levelFile.length()
+                    || in.readLong() != levelFile.lastModified() || in.readInt() != grid.getWidth()
+                    || in.readInt() != grid.getHeight() || in.readInt() != CLUSTER_SIZE) {
+                return null;
+            }
+            PathGraph graph = new PathGraph(grid);
+            for (int cluster = 0; cluster < graph.nodeCounts.length; ++cluster) {
+                progress.checkCancelled();
+                int count = in.readUnsignedByte();
+                if (count > MAX_NODES) {
+                    throw new IOException(file + " is corrupt");
+                }
+                graph.nodeCounts[cluster] = count;
+                for (int i = 0; i < count; ++i) {
+                    graph.nodeCells[cluster * MAX_NODES + i] = in.readShort();
+                    graph.nodeSides[cluster * MAX_NODES + i] = in.readByte();
+                }
+                short[] distances = new short[count * count];
+                for (int i = 0; i < distances.length; ++i) {
+                    distances[i] = in.readShort();
+                }
+                graph.clusterDistances[cluster] = distances;
+            }
+            for (int cluster = 0; cluster < graph.nodeCounts.length; ++cluster) {
+                graph.link(cluster);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Writes the path graph to a file. The file is written under a temporary name first and then renamed.
+     *
+     * @param file              path graph file
+     * @param levelLength       length of the level file the graph was built for
+     * @param levelLastModified modification date of the level file the graph was built for
+     * @throws IOException in case the file could not be written
+     */
+    private void write(File file, long levelLength, long levelLastModified) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(levelLength);
+            out.writeLong(levelLastModified);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(CLUSTER_SIZE);
+            for (int cluster = 0; cluster < nodeCounts.length; ++cluster) {
+                out.writeByte(nodeCounts[cluster]);
+                for (int i = 0; i < nodeCounts[cluster]; ++i) {
+                    out.writeShort(nodeCells[cluster * MAX_NODES + i]);
+                    out.writeByte(nodeSides[cluster * MAX_NODES + i]);
+                }
+                for (short distance : clusterDistances[cluster]) {
+                    out.writeShort(distance);
+                }
+            }
+        }
+        LevelInputOutput.replaceFile(temporaryFile, file);
+    }
+
+    /**
+     * Finds the nodes of a cluster: the entrances on each of its four sides.
+     *
+     * @param cluster index of the cluster
+     */
+    private void buildNodes(int cluster) {
+        nodeCounts[cluster] = 0;
+        int clusterX = cluster % clustersX;
+        int clusterY = cluster / clustersX;
+        int originX = clusterX << CLUSTER_SHIFT;
+        int originY = clusterY << CLUSTER_SHIFT;
+        int clusterWidth = Math.min(CLUSTER_SIZE, width - originX);
+        int clusterHeight = Math.min(CLUSTER_SIZE, height - originY);
+        if (clusterY > 0) {
+            addEntrances(cluster, TOP, originX, originY, 1, 0, clusterWidth);
+        }
+        if (clusterY < clustersY - 1) {
+            addEntrances(cluster, BOTTOM, originX, originY + clusterHeight - 1, 1, 0, clusterWidth);
+        }
+        if (clusterX > 0) {
+            addEntrances(cluster, LEFT, originX, originY, 0, 1, clusterHeight);
+        }
+        if (clusterX < clustersX - 1) {
+            addEntrances(cluster, RIGHT, originX + clusterWidth - 1, originY, 0, 1, clusterHeight);
+        }
+    }
+
+    /**
+     * Adds a node for every entrance on one side of a cluster. An entrance can only be where both the field on this
+     * side and the one on the other side of the border can be walked on. The neighbouring cluster finds the same
+     * openings from its side, so both sides end up with nodes in the same places.
+     *
+     * @param cluster index of the cluster
+     * @param side    side of the cluster
+     * @param x       x coordinate of the first field of the side
+     * @param y       y coordinate of the first field of the side
+     * @param stepX   step along the side in x direction
+     * @param stepY   step along the side in y direction
+     * @param length  length of the side
+     */
+    private void addEntrances(int cluster, byte side, int x, int y, int stepX, int stepY, int length) {
+        int acrossX = side == LEFT ? -1 : side == RIGHT ? 1 : 0;
+        int acrossY = side == TOP ? -1 : side == BOTTOM ? 1 : 0;
+        int start = -1;
+        for (int i = 0; i <= length; ++i) {
+            int fieldX = x + i * stepX;
+            int fieldY = y + i * stepY;
+            boolean open = i < length && grid.isWalkable(fieldX, fieldY, false)
+                    && grid.isWalkable(fieldX + acrossX, fieldY + acrossY, false);
+            if (open && start < 0) {
+                start = i;
+            } else if (!open && start >= 0) {
+                int end = i - 1;
+                if (end - start + 1 >= LONG_OPENING) {
+                    addNode(cluster, side, x + start * stepX, y + start * stepY);
+                    addNode(cluster, side, x + end * stepX, y + end * stepY);
+                } else {
+                    int middle = (start + end) / 2;
+                    addNode(cluster, side, x + middle * stepX, y + middle * stepY);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Adds a node to a cluster.
+     *
+     * @param cluster index of the cluster
+     * @param side    side of the cluster the entrance is on
+     * @param x       x coordinate of the node
+     * @param y       y coordinate of the node
+     */
+    private void addNode(int cluster, byte side, int x, int y) {
+        int node = cluster * MAX_NODES + nodeCounts[cluster]++;
+        nodeCells[node] = (short) (((y & (CLUSTER_SIZE - 1)) << CLUSTER_SHIFT) | (x & (CLUSTER_SIZE - 1)));
+        nodeSides[node] = side;
+    }
+
+    /**
+     * Connects the nodes of a cluster to their counterparts on the other side of the border.
+     *
+     * @param cluster index of the cluster
+     */
+    private void link(int cluster) {
+        for (int i = 0; i < nodeCounts[cluster]; ++i) {
+            int node = cluster * MAX_NODES + i;
+            int neighbour = getNeighbour(cluster, nodeSides[node]);
+            int cell = nodeCells[node];
+            //the counterpart is on the opposite side of the neighbour, in the same row or column
+            int counterpartCell;
+            switch (nodeSides[node]) {
+                case TOP:
+                    counterpartCell = cell + (CLUSTER_SIZE - 1) * CLUSTER_SIZE;
+                    break;
+                case BOTTOM:
+                    counterpartCell = cell - (CLUSTER_SIZE - 1) * CLUSTER_SIZE;
+                    break;
+                case LEFT:
+                    counterpartCell = cell + CLUSTER_SIZE - 1;
+                    break;
+                default:
+                    counterpartCell = cell - (CLUSTER_SIZE - 1);
+            }
+            byte opposite = (byte) (nodeSides[node] ^ 1);
+            partners[node] = -1;
+            for (int j = 0; j < nodeCounts[neighbour]; ++j) {
+                int other = neighbour * MAX_NODES + j;
+                if (nodeSides[other] == opposite && nodeCells[other] == counterpartCell) {
+                    partners[node] = (byte) j;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the cluster on the other side of a side of a cluster.
+     *
+     * @param cluster index of the cluster
+     * @param side    side of the cluster
+     * @return index of the neighbouring cluster
+     */
+    private int getNeighbour(int cluster, byte side) {
+        switch (side) {
+            case TOP:
+                return cluster - clustersX;
+            case BOTTOM:
+                return cluster + clustersX;
+            case LEFT:
+                return cluster - 1;
+            default:
+                return cluster + 1;
+        }
+    }
+
+    /**
+     * Computes the amount of steps between any two nodes of a cluster, only walking within the cluster.
+     *
+     * @param cluster index of the cluster
+     */
+    private void buildDistances(int cluster) {
+        loadWalkable(cluster);
+        int count = nodeCounts[cluster];
+        short[] distances = new short[count * count];
+        for (int i = 0; i < count; ++i) {
+            searchCluster(cluster, nodeCells[cluster * MAX_NODES + i]);
+            for (int j = 0; j < count; ++j) {
+                int distance = localDistances[nodeCells[cluster * MAX_NODES + j]];
+                distances[i * count + j] = distance < 0 ? UNREACHABLE : (short) distance;
+            }
+        }
+        clusterDistances[cluster] = distances;
+    }
+
+    /**
+     * Copies the walkability of the fields of a cluster into the walkable buffer. Fields outside of the level cannot be
+     * walked on.
+     *
+     * @param cluster index of the cluster
+     */
+    private void loadWalkable(int cluster) {
+        int originX = (cluster % clustersX) << CLUSTER_SHIFT;
+        int originY = (cluster / clustersX) << CLUSTER_SHIFT;
+        for (int cell = 0; cell < CLUSTER_AREA; ++cell) {
+            walkable[cell] = grid.isWalkable(originX + (cell & (CLUSTER_SIZE - 1)), originY + (cell >> CLUSTER_SHIFT), false);
+        }
+    }
+
+    /**
+     * Finds the amount of steps from a field of a cluster to all other fields of the cluster, only walking within the
+     * cluster. The walkable buffer has to hold the cluster. The start itself does not need to be walkable.
+     *
+     * @param cluster index of the cluster
+     * @param start   field within the cluster
+     */
+    private void searchCluster(int cluster, int start) {
+        Arrays.fill(localDistances, -1);
+        int head = 0;
+        int tail = 0;
+        localDistances[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int cellX = cell & (CLUSTER_SIZE - 1);
+            int cellY = cell >> CLUSTER_SHIFT;
+            int distance = localDistances[cell] + 1;
+            if (cellY > 0 && walkable[cell - CLUSTER_SIZE] && localDistances[cell - CLUSTER_SIZE] < 0) {
+                localDistances[cell - CLUSTER_SIZE] = distance;
+                queue[tail++] = cell - CLUSTER_SIZE;
+            }
+            if (cellY < CLUSTER_SIZE - 1 && walkable[cell + CLUSTER_SIZE] && localDistances[cell + CLUSTER_SIZE] < 0) {
+                localDistances[cell + CLUSTER_SIZE] = distance;
+                queue[tail++] = cell + CLUSTER_SIZE;
+            }
+            if (cellX > 0 && walkable[cell - 1] && localDistances[cell - 1] < 0) {
+                localDistances[cell - 1] = distance;
+                queue[tail++] = cell - 1;
+            }
+            if (cellX < CLUSTER_SIZE - 1 && walkable[cell + 1] && localDistances[cell + 1] < 0) {
+                localDistances[cell + 1] = distance;
+                queue[tail++] = cell + 1;
+            }
+        }
+    }
+
+    /**
+     * Tells the graph that a tile has changed. The clusters around it are rebuilt before the next search.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     */
+    public void tileChanged(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
+        }
+        dirtyClusters.set((y >> CLUSTER_SHIFT) * clustersX + (x >> CLUSTER_SHIFT));
+    }
+
+    /**
+     * Rebuilds the clusters around changed tiles. Changing a field can change the entrances of its cluster, which are
+     * shared with the neighbouring clusters, so those are rebuilt as well, and the clusters around them are connected
+     * to them again.
+     */
+    private void repair() {
+        BitSet rebuilt = new BitSet();
+        for (int cluster = dirtyClusters.nextSetBit(0); cluster >= 0; cluster = dirtyClusters.nextSetBit(cluster + 1)) {
+            addWithNeighbours(rebuilt, cluster);
+        }
+        BitSet relinked = new BitSet();
+        for (int cluster = rebuilt.nextSetBit(0); cluster >= 0; cluster = rebuilt.nextSetBit(cluster + 1)) {
+            buildNodes(cluster);
+            addWithNeighbours(relinked, cluster);
+        }
+        for (int cluster = relinked.nextSetBit(0); cluster >= 0; cluster = relinked.nextSetBit(cluster + 1)) {
+            link(cluster);
+        }
+        for (int cluster = rebuilt.nextSetBit(0); cluster >= 0; cluster = rebuilt.nextSetBit(cluster + 1)) {
+            buildDistances(cluster);
+        }
+        dirtyClusters.clear();
+    }
+
+    /**
+     * Adds a cluster and its four neighbours to a set of clusters.
+     *
+     * @param clusters set of clusters
+     * @param cluster  index of the cluster
+     */
+    private void addWithNeighbours(BitSet clusters, int cluster) {
+        int clusterX = cluster % clustersX;
+        int clusterY = cluster / clustersX;
+        clusters.set(cluster);
+        if (clusterY > 0) {
+            clusters.set(cluster - clustersX);
+        }
+        if (clusterY < clustersY - 1) {
+            clusters.set(cluster + clustersX);
+        }
+        if (clusterX > 0) {
+            clusters.set(cluster - 1);
+        }
+        if (clusterX < clustersX - 1) {
+            clusters.set(cluster + 1);
+        }
+    }
+
+    /**
+     * Makes sure the graph leads to the given field. The distances of all nodes are only computed again if the target
+     * has moved to another cluster or tiles have changed since the last time. Must not be called while traps are
+     * asking for directions.
+     *
+     * @param x x coordinate of the target (usually the player)
+     * @param y y coordinate of the target
+     */
+    public synchronized void update(int x, int y) {
+        boolean changed = !dirtyClusters.isEmpty();
+        if (changed) {
+            repair();
+        }
+        if (searched && !changed && x >> CLUSTER_SHIFT == targetX >> CLUSTER_SHIFT
+                && y >> CLUSTER_SHIFT == targetY >> CLUSTER_SHIFT) {
+            return;
+        }
+        targetX = x;
+        targetY = y;
+        searched = true;
+        ++search;
+
+        //the nodes of the cluster of the target are as far away as they are within the cluster
+        int targetCluster = getCluster(x, y);
+        loadWalkable(targetCluster);
+        searchCluster(targetCluster, getCell(x, y));
+        int heapSize = 0;
+        for (int i = 0; i < nodeCounts[targetCluster]; ++i) {
+            int node = targetCluster * MAX_NODES + i;
+            int distance = localDistances[nodeCells[node]];
+            if (distance >= 0) {
+                nodeDistances[node] = distance;
+                nodeSearches[node] = search;
+                heapSize = push(heapSize, distance, node);
+            }
+        }
+        //Dijkstra on the graph: from a node, either cross the border to its counterpart or walk to another node
+        while (heapSize > 0) {
+            long top = heap[0];
+            heapSize = pop(heapSize);
+            int distance = (int) (top >>> 32);
+            int node = (int) top;
+            if (distance > nodeDistances[node]) {
+                //outdated entry, the node has been reached on a shorter path since
+                continue;
+            }
+            int cluster = node / MAX_NODES;
+            int index = node % MAX_NODES;
+            if (partners[node] >= 0) {
+                int partner = getNeighbour(cluster, nodeSides[node]) * MAX_NODES + partners[node];
+                heapSize = relax(heapSize, partner, distance + 1);
+            }
+            int count = nodeCounts[cluster];
+            short[] distances = clusterDistances[cluster];
+            for (int j = 0; j < count; ++j) {
+                short step = distances[index * count + j];
+                //two entrances in a corner of the cluster can share a field, so a step of 0 is possible
+                if (j != index && step != UNREACHABLE) {
+                    heapSize = relax(heapSize, cluster * MAX_NODES + j, distance + step);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lowers the distance of a node if a shorter path to it has been found.
+     *
+     * @param heapSize current size of the heap
+     * @param node     node
+     * @param distance distance of the new path
+     * @return new size of the heap
+     */
+    private int relax(int heapSize, int node, int distance) {
+        if (nodeSearches[node] == search && nodeDistances[node] <= distance) {
+            return heapSize;
+        }
+        nodeSearches[node] = search;
+        nodeDistances[node] = distance;
+        return push(heapSize, distance, node);
+    }
+
+    /**
+     * Adds a node to the heap of the search.
+     *
+     * @param heapSize current size of the heap
+     * @param distance distance of the node
+     * @param node     node
+     * @return new size of the heap
+     */
+    private int push(int heapSize, int distance, int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        long entry = ((long) distance << 32) | node;
+        int i = heapSize;
+        while (i > 0 && heap[(i - 1) / 2] > entry) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = entry;
+        return heapSize + 1;
+    }
+
+    /**
+     * Removes the closest node from the heap of the search.
+     *
+     * @param heapSize current size of the heap
+     * @return new size of the heap
+     */
+    private int pop(int heapSize) {
+        long last = heap[--heapSize];
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                ++child;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return heapSize;
+    }
+
+    /**
+     * Gets the direction of the first step on the way from a field to the target of the last update. Can be called
+     * from several threads at once, as long as the graph is not updated at the same time.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return direction (0 => up, 1 => down, 2 => left, 3 => right), or FlowField.NO_DIRECTION if the field is the
+     * target or cannot reach it
+     */
+    public int getDirection(int x, int y) {
+        if (!searched || x < 0 || y < 0 || x >= width || y >= height) {
+            return FlowField.NO_DIRECTION;
+        }
+        int cluster = getCluster(x, y);
+        ClusterField field = fields[cluster];
+        if (field == null || field.search != search) {
+            field = buildField(cluster);
+        }
+        return field.directions[getCell(x, y)];
+    }
+
+    /**
+     * Computes the directions within a cluster, leading each field to the node of the cluster through which the target
+     * is reached the fastest (or to the target itself, if it is in the cluster).
+     * <p>
+     * All fields start out at the distance of the closest exit, so the search within the cluster starts from several
+     * fields with different distances. They are added in the order of their distances, which keeps the queue sorted.
+     *
+     * @param cluster index of the cluster
+     * @return directions within the cluster
+     */
+    private synchronized ClusterField buildField(int cluster) {
+        ClusterField field = fields[cluster];
+        if (field != null && field.search == search) {
+            //another thread was faster
+            return field;
+        }
+        byte[] directions = new byte[CLUSTER_AREA];
+        Arrays.fill(directions, (byte) FlowField.NO_DIRECTION);
+        //starting points: the target itself, and the nodes through which the shortest path leaves the cluster
+        long[] starts = new long[MAX_NODES + 1];
+        int startCount = 0;
+        if (cluster == getCluster(targetX, targetY)) {
+            starts[startCount++] = ((long) 0 << 32) | ((long) FlowField.NO_DIRECTION & 0xff) << 16 | getCell(targetX, targetY);
+        }
+        for (int i = 0; i < nodeCounts[cluster]; ++i) {
+            int node = cluster * MAX_NODES + i;
+            if (nodeSearches[node] != search || partners[node] < 0) {
+                continue;
+            }
+            int partner = getNeighbour(cluster, nodeSides[node]) * MAX_NODES + partners[node];
+            if (nodeSearches[partner] == search && nodeDistances[partner] + 1 == nodeDistances[node]) {
+                starts[startCount++] = ((long) nodeDistances[node] << 32) | (long) nodeSides[node] << 16 | nodeCells[node];
+            }
+        }
+        Arrays.sort(starts, 0, startCount);
+
+        loadWalkable(cluster);
+        Arrays.fill(localDistances, -1);
+        int head = 0;
+        int tail = 0;
+        int nextStart = 0;
+        while (nextStart < startCount || head < tail) {
+            if (nextStart < startCount && (head == tail || (int) (starts[nextStart] >>> 32) <= localDistances[queue[head]])) {
+                long start = starts[nextStart++];
+                int cell = (int) start & 0xffff;
+                if (localDistances[cell] < 0) {
+                    localDistances[cell] = (int) (start >>> 32);
+                    directions[cell] = (byte) (start >>> 16);
+                    queue[tail++] = cell;
+                }
+                continue;
+            }
+            int cell = queue[head++];
+            int cellX = cell & (CLUSTER_SIZE - 1);
+            int cellY = cell >> CLUSTER_SHIFT;
+            int distance = localDistances[cell] + 1;
+            //a field next to this one leads here by stepping in the opposite direction
+            if (cellY > 0 && walkable[cell - CLUSTER_SIZE] && localDistances[cell - CLUSTER_SIZE] < 0) {
+                localDistances[cell - CLUSTER_SIZE] = distance;
+                directions[cell - CLUSTER_SIZE] = FlowField.DOWN;
+                queue[tail++] = cell - CLUSTER_SIZE;
+            }
+            if (cellY < CLUSTER_SIZE - 1 && walkable[cell + CLUSTER_SIZE] && localDistances[cell + CLUSTER_SIZE] < 0) {
+                localDistances[cell + CLUSTER_SIZE] = distance;
+                directions[cell + CLUSTER_SIZE] = FlowField.UP;
+                queue[tail++] = cell + CLUSTER_SIZE;
+            }
+            if (cellX > 0 && walkable[cell - 1] && localDistances[cell - 1] < 0) {
+                localDistances[cell - 1] = distance;
+                directions[cell - 1] = FlowField.RIGHT;
+                queue[tail++] = cell - 1;
+            }
+            if (cellX < CLUSTER_SIZE - 1 && walkable[cell + 1] && localDistances[cell + 1] < 0) {
+                localDistances[cell + 1] = distance;
+                directions[cell + 1] = FlowField.LEFT;
+                queue[tail++] = cell + 1;
+            }
+        }
+        field = new ClusterField(search, directions);
+        fields[cluster] = field;
+        return field;
+    }
+
+    /**
+     * Gets the cluster a field belongs to.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return index of the cluster
+     */
+    private int getCluster(int x, int y) {
+        return (y >> CLUSTER_SHIFT) * clustersX + (x >> CLUSTER_SHIFT);
+    }
+
+    /**
+     * Gets the index of a field within its cluster.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return field within the cluster
+     */
+    private static int getCell(int x, int y) {
+        return ((y & (CLUSTER_SIZE - 1)) << CLUSTER_SHIFT) | (x & (CLUSTER_SIZE - 1));
+    }
+
+    /**
+     * Gets the amount of nodes in the graph.
+     *
+     * @return amount of nodes
+     */
+    public int getNodeCount() {
+        int count = 0;
+        for (int nodeCount : nodeCounts) {
+            count += nodeCount;
+        }
+        return count;
+    }
+
+    /**
+     * The directions within a cluster for a single search. Its fields are final, so a field built by one thread can
+     * safely be used by the others.
+     */
+    private static class ClusterField {
+        private final int search;
+        private final byte[] directions;
+
+        /**
+         * Creates the directions of a cluster.
+         *
+         * @param search     search the directions belong to
+         * @param directions direction per field of the cluster
+         */
+        ClusterField(int search, byte[] directions) {
+            this.search = search;
+            this.directions = directions;
+        }
+    }
+}
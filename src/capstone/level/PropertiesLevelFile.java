@@ -0,0 +1,557 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.DynamicGameObject;
+import capstone.gameobject.dynamicObjects.MovingTrapGameObject;
+import capstone.gameobject.dynamicObjects.PlayerGameObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads and writes levels in the properties format ("x,y=type" per field, plus a few named entries such as Width and
+ * Height). The files are fully compatible with java.util.Properties, but they are not read through it: loading all
+ * entries into a hash table and then looking up every single field of the level (most of which are empty) takes far
+ * longer than the file itself is large.
+ * <p>
+ * Instead, the file is read in a single pass. Every "x,y=type" line is parsed in place and put straight into the tile
+ * grid, without creating any strings. Only the few named entries are kept as strings. Since Properties files are not
+ * ordered, fields that appear before Width and Height are known are remembered in a compact array and put into the
+ * grid as soon as the level can be created.
+ * <p>
+ * The writer works the same way: it writes line by line instead of collecting all entries in a Properties object.
+ */
+class PropertiesLevelFile {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final InputStream in;
+    private final LevelLoadProgress progress;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean skipLineFeed; //the last line ended with \r, so a following \n belongs to it
+    private char[] line = new char[256]; //current logical line, escapes are still contained
+    private int lineLength;
+
+    private final HashMap<String, String> namedEntries = new HashMap<>();
+    private Level level;
+    private int[] pendingFields = new int[3 * 64]; //x, y and type of fields read before the size was known
+    private int pendingFieldCount;
+    private int[] entrances = new int[8]; //x and y of every entrance line
+    private int entranceCount;
+    private final ArrayList<DynamicGameObject> fieldContent = new ArrayList<>(); //reused when replacing fields
+
+    /**
+     * Creates a reader for a properties level.
+     *
+     * @param in       stream to read from
+     * @param progress progress to report the bytes read to
+     */
+    private PropertiesLevelFile(InputStream in, LevelLoadProgress progress) {
+        this.in = in;
+        this.progress = progress;
+    }
+
+    /**
+     * Reads a level from a properties file in a single pass.
+     *
+     * @param file     properties level file
+     * @param progress progress to report the bytes read to, also used to cancel the reading
+     * @return the level
+     * @throws IOException in case the file could not be read or does not describe a level
+     */
+    static Level readLevel(File file, LevelLoadProgress progress) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return new PropertiesLevelFile(in, progress).read();
+        }
+    }
+
+    /**
+     * Reads all entries and builds the level from them.
+     *
+     * @return the level
+     * @throws IOException in case the file could not be read or does not describe a level
+     */
+    private Level read() throws IOException {
+        while (readLine()) {
+            parseLine();
+        }
+        if (level == null) {
+            throw new IOException("The level file does not contain Width and Height");
+        }
+        if (namedEntries.get("playerX") != null) {
+            //for simplicity's sake we assume that once playerX exists, a full set of player info exists.
+            int playerX = Integer.parseInt(namedEntries.get("playerX"));
+            int playerY = Integer.parseInt(namedEntries.get("playerY"));
+            int playerLives = Integer.parseInt(namedEntries.get("playerLives"));
+            int playerScore = Integer.parseInt(namedEntries.get("playerScore"));
+            boolean playerHasKey = Boolean.parseBoolean(namedEntries.get("playerHaskey"));
+            level.setPlayer(new PlayerGameObject(playerX, playerY, playerLives, level, playerHasKey));
+            level.getPlayer().setScore(playerScore);
+            level.setSave(true);
+        } else {
+            //if there are several entrances, the player starts at the last one in column order. Entrances might have
+            //been replaced by a later line, so only the ones that are still there count.
+            int entranceX = -1;
+            int entranceY = -1;
+            for (int i = 0; i < entranceCount; i += 2) {
+                int x = entrances[i];
+                int y = entrances[i + 1];
+                if (level.getStaticGameObjects().getTileType(x, y) == TileGrid.ENTRANCE
+                        && (x > entranceX || (x == entranceX && y > entranceY))) {
+                    entranceX = x;
+                    entranceY = y;
+                }
+            }
+            if (entranceX >= 0) {
+                // it's not a player save, hence we generate a new object at the entrance
+                level.setPlayer(new PlayerGameObject(entranceX, entranceY, 5, level, false));
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Gets the next byte of the file.
+     *
+     * @return next byte, or -1 at the end of the file
+     * @throws IOException in case the file could not be read
+     */
+    private int readByte() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            progress.addBytesRead(limit);
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /**
+     * Reads the next logical line into the line buffer, following the rules of java.util.Properties: comment lines
+     * and blank lines are skipped, whitespace at the beginning of a line is dropped, and a line ending in a backslash
+     * continues on the next line.
+     *
+     * @return whether a line was read (false at the end of the file)
+     * @throws IOException in case the file could not be read
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean skipWhitespace = true;
+        boolean comment = false;
+        boolean precedingBackslash = false;
+        while (true) {
+            int c = readByte();
+            if (c < 0) {
+                if (precedingBackslash) {
+                    //a backslash at the end of the file continues nothing
+                    --lineLength;
+                }
+                return !comment && lineLength > 0;
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                skipLineFeed = c == '\r';
+                if (comment || lineLength == 0) {
+                    //comment or blank line, start over
+                    comment = false;
+                    skipWhitespace = true;
+                    continue;
+                }
+                if (precedingBackslash) {
+                    //the line continues on the next line
+                    --lineLength;
+                    precedingBackslash = false;
+                    skipWhitespace = true;
+                    continue;
+                }
+                return true;
+            }
+            if (comment) {
+                continue;
+            }
+            if (skipWhitespace) {
+                if (c == ' ' || c == '\t' || c == '\f') {
+                    continue;
+                }
+                skipWhitespace = false;
+                if (lineLength == 0 && (c == '#' || c == '!')) {
+                    comment = true;
+                    continue;
+                }
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = (char) c;
+            precedingBackslash = c == '\\' && !precedingBackslash;
+        }
+    }
+
+    /**
+     * Splits the current line into key and value. Fields ("x,y=type") are handled without creating any strings, all
+     * other entries are remembered by name.
+     *
+     * @throws IOException in case a field does not contain a number
+     */
+    private void parseLine() throws IOException {
+        //the key ends at the first separator that is not escaped
+        int keyEnd = 0;
+        boolean escaped = false;
+        while (keyEnd < lineLength) {
+            char c = line[keyEnd];
+            if (c == '\\') {
+                escaped = true;
+                keyEnd += 2;
+                continue;
+            }
+            if (c == '=' || c == ':' || c == ' ' || c == '\t' || c == '\f') {
+                break;
+            }
+            ++keyEnd;
+        }
+        keyEnd = Math.min(keyEnd, lineLength);
+        int valueStart = keyEnd;
+        while (valueStart < lineLength && isWhitespace(line[valueStart])) {
+            ++valueStart;
+        }
+        if (valueStart < lineLength && (line[valueStart] == '=' || line[valueStart] == ':')) {
+            ++valueStart;
+        }
+        while (valueStart < lineLength && isWhitespace(line[valueStart])) {
+            ++valueStart;
+        }
+
+        int comma = escaped ? -1 : findFieldComma(keyEnd);
+        if (comma < 0) {
+            namedEntries.put(unescape(0, keyEnd), unescape(valueStart, lineLength));
+            if (level == null && namedEntries.containsKey("Width") && namedEntries.containsKey("Height")) {
+                createLevel();
+            }
+            return;
+        }
+        int x = parseNumber(0, comma);
+        int y = parseNumber(comma + 1, keyEnd);
+        int type;
+        try {
+            type = parseNumber(valueStart, lineLength);
+        } catch (NumberFormatException ex) {
+            //not a plain number, let Java have a go at it (e.g. escaped characters, explicit plus signs)
+            try {
+                type = Integer.parseInt(unescape(valueStart, lineLength));
+            } catch (NumberFormatException ex2) {
+                throw new IOException("Field " + x + "," + y + " does not contain a number");
+            }
+        }
+        if (level == null) {
+            if (pendingFieldCount + 3 > pendingFields.length) {
+                pendingFields = Arrays.copyOf(pendingFields, pendingFields.length * 2);
+            }
+            pendingFields[pendingFieldCount++] = x;
+            pendingFields[pendingFieldCount++] = y;
+            pendingFields[pendingFieldCount++] = type;
+        } else {
+            setField(x, y, type);
+        }
+    }
+
+    /**
+     * Checks whether a key has the form "x,y" (two unsigned numbers separated by a comma).
+     *
+     * @param keyEnd end of the key within the line
+     * @return position of the comma, or -1 if the key is not a field
+     */
+    private int findFieldComma(int keyEnd) {
+        int comma = -1;
+        for (int i = 0; i < keyEnd; ++i) {
+            char c = line[i];
+            if (c == ',' && comma < 0 && i > 0) {
+                comma = i;
+            } else if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return comma < keyEnd - 1 ? comma : -1;
+    }
+
+    /**
+     * Parses a number from a part of the line.
+     *
+     * @param from first character (inclusive)
+     * @param to   last character (exclusive)
+     * @return parsed number
+     * @throws NumberFormatException in case the part is not a plain number
+     */
+    private int parseNumber(int from, int to) {
+        boolean negative = from < to && line[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || to - i > 9) {
+            throw new NumberFormatException();
+        }
+        int value = 0;
+        for (; i < to; ++i) {
+            char c = line[i];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Whether a character counts as whitespace in a properties file.
+     *
+     * @param c character
+     * @return character is whitespace
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    /**
+     * Turns a part of the line into a string, resolving escapes such as \t and unicode escapes.
+     *
+     * @param from first character (inclusive)
+     * @param to   last character (exclusive)
+     * @return unescaped string
+     */
+    private String unescape(int from, int to) {
+        StringBuilder builder = new StringBuilder(to - from);
+        for (int i = from; i < to; ++i) {
+            char c = line[i];
+            if (c != '\\' || i + 1 >= to) {
+                builder.append(c);
+                continue;
+            }
+            c = line[++i];
+            switch (c) {
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 < to) {
+                        builder.append((char) Integer.parseInt(new String(line, i + 1, 4), 16));
+                        i += 4;
+                    }
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Creates the level as soon as its size is known, and puts all fields into it that have been read so far.
+     */
+    private void createLevel() {
+        int width = Integer.parseInt(namedEntries.get("Width"));
+        int height = Integer.parseInt(namedEntries.get("Height"));
+        level = new Level(width, height);
+        for (int i = 0; i < pendingFieldCount; i += 3) {
+            setField(pendingFields[i], pendingFields[i + 1], pendingFields[i + 2]);
+        }
+        pendingFields = null;
+    }
+
+    /**
+     * Puts a field of the file into the level. Like in java.util.Properties, a field that appears more than once
+     * takes the value of its last line, so whatever an earlier line has put on the field is removed first.
+     *
+     * @param x    x coordinate of the field
+     * @param y    y coordinate of the field
+     * @param type type code of the field
+     */
+    private void setField(int x, int y, int type) {
+        if (!level.isInsideLevel(x, y)) {
+            return;
+        }
+        if (level.getStaticGameObjects().getTileType(x, y) != TileGrid.EMPTY) {
+            level.setTileType(x, y, TileGrid.EMPTY);
+        }
+        if (level.getTrapSwarm().size() > 0) {
+            level.queryDynamicGameObjectsAt(x, y, fieldContent);
+            for (int i = 0; i < fieldContent.size(); ++i) {
+                level.removeDynamicGameObject(fieldContent.get(i));
+            }
+            fieldContent.clear();
+        }
+        switch (type) {
+            case 1:
+                level.setTileType(x, y, TileGrid.ENTRANCE);
+                if (entranceCount == entrances.length) {
+                    entrances = Arrays.copyOf(entrances, entranceCount * 2);
+                }
+                entrances[entranceCount++] = x;
+                entrances[entranceCount++] = y;
+                break;
+            case 4:
+                level.addDynamicGameobject(new MovingTrapGameObject(x, y, level));
+                break;
+            case 0:
+            case 2:
+            case 3:
+            case 5:
+            case 6:
+                //the tile type codes are the same as the ones in the file
+                level.setTileType(x, y, (byte) type);
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Writes a level to a properties file line by line. Like java.util.Properties, the file starts with a comment
+     * containing the current date. A savable dynamic game object replaces the static tile it is standing on, since
+     * every field can only appear once. The file is written under a temporary name first and then renamed, so a crash
+     * while writing never leaves a half written file behind.
+     *
+     * @param l    level to be written
+     * @param file properties file
+     * @throws IOException in case the file could not be written
+     */
+    static void writeLevel(Level l, File file) throws IOException {
+        TileGrid grid = l.getStaticGameObjects();
+        PlayerGameObject player = l.getPlayer();
+        List<DynamicGameObject> dynamicGameObjects = l.getDynamicGameObjects();
+        int width = grid.getWidth();
+
+        //fields covered by savable dynamic game objects, sorted in the order the fields are written
+        long[] coveredFields = new long[dynamicGameObjects.size()];
+        int coveredFieldCount = 0;
+        for (int i = 0; i < dynamicGameObjects.size(); ++i) {
+            DynamicGameObject d = dynamicGameObjects.get(i);
+            if (d.isSavable() && l.isInsideLevel(d.getX(), d.getY())) {
+                coveredFields[coveredFieldCount++] = (long) d.getY() * width + d.getX();
+            }
+        }
+        Arrays.sort(coveredFields, 0, coveredFieldCount);
+
+        byte[] line = new byte[40];
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temporaryFile), BUFFER_SIZE)) {
+            writeLine(out, "#" + new Date());
+            writeLine(out, "Height=" + grid.getHeight());
+            writeLine(out, "Width=" + width);
+            int nextCovered = 0;
+            byte[] row = new byte[width]; //tile types of the current row, copied chunk by chunk
+            for (int y = 0; y < grid.getHeight(); ++y) {
+                grid.copyTileTypes(0, y, width, 1, row);
+                for (int x = 0; x < width; ++x) {
+                    byte type = row[x];
+                    if (type == TileGrid.EMPTY) {
+                        continue;
+                    }
+                    long field = (long) y * width + x;
+                    while (nextCovered < coveredFieldCount && coveredFields[nextCovered] < field) {
+                        ++nextCovered;
+                    }
+                    if (nextCovered < coveredFieldCount && coveredFields[nextCovered] == field) {
+                        continue;
+                    }
+                    writeField(out, line, x, y, type);
+                }
+            }
+            for (int i = 0; i < dynamicGameObjects.size(); ++i) {
+                DynamicGameObject d = dynamicGameObjects.get(i);
+                if (d.isSavable()) {
+                    writeField(out, line, d.getX(), d.getY(),
+                            Integer.parseInt(SaveFileHelper.getSavegameCharacterRepresentation(d)));
+                }
+            }
+            writeLine(out, "playerX=" + player.getX());
+            writeLine(out, "playerY=" + player.getY());
+            writeLine(out, "playerLives=" + player.getLives());
+            writeLine(out, "playerScore=" + player.getScore());
+            writeLine(out, "playerHaskey=" + player.isHasKey());
+        }
+        LevelInputOutput.replaceFile(temporaryFile, file);
+    }
+
+    /**
+     * Writes a line of text.
+     *
+     * @param out  stream to write to
+     * @param text text of the line
+     * @throws IOException in case the line could not be written
+     */
+    private static void writeLine(OutputStream out, String text) throws IOException {
+        out.write((text + LINE_SEPARATOR).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Writes a single "x,y=type" line. The line is put together in a scratch array and written in one go, without
+     * creating any strings.
+     *
+     * @param out  stream to write to
+     * @param line scratch space for the line
+     * @param x    x coordinate of the field
+     * @param y    y coordinate of the field
+     * @param type type code of the field
+     * @throws IOException in case the line could not be written
+     */
+    private static void writeField(OutputStream out, byte[] line, int x, int y, int type) throws IOException {
+        int length = appendNumber(line, 0, x);
+        line[length++] = ',';
+        length = appendNumber(line, length, y);
+        line[length++] = '=';
+        length = appendNumber(line, length, type);
+        for (int i = 0; i < LINE_SEPARATOR.length(); ++i) {
+            line[length++] = (byte) LINE_SEPARATOR.charAt(i);
+        }
+        out.write(line, 0, length);
+    }
+
+    /**
+     * Appends the digits of a number to a scratch array.
+     *
+     * @param line   scratch array
+     * @param offset position to write the number to
+     * @param value  number to be written
+     * @return position after the number
+     */
+    private static int appendNumber(byte[] line, int offset, int value) {
+        if (value < 0) {
+            line[offset++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            ++digits;
+        }
+        for (int i = offset + digits - 1; i >= offset; --i) {
+            line[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
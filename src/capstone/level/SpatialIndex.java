@@ -0,0 +1,193 @@
+package capstone.level;
+
+import capstone.gameobject.dynamicObjects.DynamicGameObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The spatial index is a uniform grid of buckets laid over the level. Every dynamic game object that is within the
+ * boundaries of the level is stored in the bucket that covers its current cell. This allows questions like "which
+ * objects are standing on this field?" or "which objects are visible on screen?" to be answered by only looking at a
+ * handful of buckets instead of every dynamic game object in the level.
+ * <p>
+ * The index does not track movement on its own. Whoever moves an object is responsible for calling
+ * {@link #move(DynamicGameObject, int, int, int, int)}, which is done by the level whenever a dynamic game object
+ * reports a changed position.
+ */
+public class SpatialIndex {
+    private static final int BUCKET_SIZE = 8; //edge length of a bucket in fields
+    private final int width;
+    private final int height;
+    private final int bucketColumns;
+    private final int bucketRows;
+    private final ArrayList<DynamicGameObject>[] buckets;
+
+    /**
+     * Creates an empty spatial index covering a level of the given size.
+     *
+     * @param width  width of the level in fields
+     * @param height height of the level in fields
+     */
+    public SpatialIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.bucketColumns = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        this.bucketRows = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        //buckets are created lazily, since most of a sparse level never sees a dynamic game object.
+        @SuppressWarnings({"unchecked", "rawtypes"}) //arrays of a generic type can only be created raw
+        ArrayList<DynamicGameObject>[] emptyBuckets = new ArrayList[bucketColumns * bucketRows];
+        this.buckets = emptyBuckets;
+    }
+
+    /**
+     * Whether a coordinate lies within the indexed area. Objects outside of it (e.g. collided bullets at (-1|-1)) are
+     * simply not indexed.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return coordinate is within the level
+     */
+    private boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Gets the position of the bucket covering the given field in the bucket array.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return bucket index
+     */
+    private int bucketIndex(int x, int y) {
+        return (y / BUCKET_SIZE) * bucketColumns + x / BUCKET_SIZE;
+    }
+
+    /**
+     * Adds a dynamic game object at the given position.
+     *
+     * @param d dynamic game object to be added
+     * @param x x coordinate of the object
+     * @param y y coordinate of the object
+     */
+    public void insert(DynamicGameObject d, int x, int y) {
+        if (!isInside(x, y)) {
+            return;
+        }
+        int index = bucketIndex(x, y);
+        ArrayList<DynamicGameObject> bucket = buckets[index];
+        if (bucket == null) {
+            bucket = new ArrayList<>(4);
+            buckets[index] = bucket;
+        }
+        bucket.add(d);
+    }
+
+    /**
+     * Removes a dynamic game object that was last indexed at the given position.
+     *
+     * @param d dynamic game object to be removed
+     * @param x x coordinate the object was indexed at
+     * @param y y coordinate the object was indexed at
+     * @return whether the object was found in the index
+     */
+    public boolean remove(DynamicGameObject d, int x, int y) {
+        if (!isInside(x, y)) {
+            return false;
+        }
+        ArrayList<DynamicGameObject> bucket = buckets[bucketIndex(x, y)];
+        if (bucket == null) {
+            return false;
+        }
+        //swap-remove, the order within a bucket carries no meaning
+        int i = bucket.indexOf(d);
+        if (i < 0) {
+            return false;
+        }
+        int last = bucket.size() - 1;
+        bucket.set(i, bucket.get(last));
+        bucket.remove(last);
+        return true;
+    }
+
+    /**
+     * Moves a dynamic game object from one position to another. Nothing happens if both positions are covered by the
+     * same bucket, or if the object is no longer part of the index (e.g. a trap that was hit by a bullet earlier in the
+     * same frame).
+     *
+     * @param d    dynamic game object that has moved
+     * @param oldX previous x coordinate
+     * @param oldY previous y coordinate
+     * @param newX new x coordinate
+     * @param newY new y coordinate
+     */
+    public void move(DynamicGameObject d, int oldX, int oldY, int newX, int newY) {
+        boolean wasInside = isInside(oldX, oldY);
+        boolean isInside = isInside(newX, newY);
+        if (wasInside && isInside && bucketIndex(oldX, oldY) == bucketIndex(newX, newY)) {
+            return;
+        }
+        if (wasInside && !remove(d, oldX, oldY)) {
+            return;
+        }
+        insert(d, newX, newY);
+    }
+
+    /**
+     * Collects all dynamic game objects standing on the given field.
+     *
+     * @param x      x coordinate of the field
+     * @param y      y coordinate of the field
+     * @param result list the objects will be added to
+     */
+    public void collectAt(int x, int y, List<DynamicGameObject> result) {
+        if (!isInside(x, y)) {
+            return;
+        }
+        ArrayList<DynamicGameObject> bucket = buckets[bucketIndex(x, y)];
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.size(); ++i) {
+            DynamicGameObject d = bucket.get(i);
+            if (d.getX() == x && d.getY() == y) {
+                result.add(d);
+            }
+        }
+    }
+
+    /**
+     * Collects all dynamic game objects within the given rectangle. The rectangle is clipped to the level boundaries.
+     *
+     * @param x      x coordinate of the upper left corner
+     * @param y      y coordinate of the upper left corner
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     * @param result list the objects will be added to
+     */
+    public void collectInRectangle(int x, int y, int width, int height, List<DynamicGameObject> result) {
+        int minX = Math.max(x, 0);
+        int minY = Math.max(y, 0);
+        int maxX = Math.min(x + width, this.width) - 1;
+        int maxY = Math.min(y + height, this.height) - 1;
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+        for (int by = minY / BUCKET_SIZE; by <= maxY / BUCKET_SIZE; ++by) {
+            for (int bx = minX / BUCKET_SIZE; bx <= maxX / BUCKET_SIZE; ++bx) {
+                ArrayList<DynamicGameObject> bucket = buckets[by * bucketColumns + bx];
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); ++i) {
+                    DynamicGameObject d = bucket.get(i);
+                    int dx = d.getX();
+                    int dy = d.getY();
+                    if (dx >= minX && dx <= maxX && dy >= minY && dy <= maxY) {
+                        result.add(d);
+                    }
+                }
+            }
+        }
+    }
+}
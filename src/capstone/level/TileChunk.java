@@ -0,0 +1,78 @@
+package capstone.level;
+
+/**
+ * A tile chunk is a square block of 64x64 fields of a {@link TileGrid}. Chunks are the unit in which the static part
+ * of a level is loaded from disk and dropped from memory again.
+ * <p>
+ * Besides the tile types, a chunk keeps two bitsets telling which of its fields can be walked on by the player and by
+ * the moving traps. Since a chunk is 64 fields wide, each row of a bitset is a single long. Walkability is checked for
+ * every step of every moving object, so this turns the check into a single bit test.
+ */
+class TileChunk {
+    static final int SHIFT = 6;
+    static final int SIZE = 1 << SHIFT; //fields per side
+    static final int MASK = SIZE - 1;
+    static final int AREA = SIZE * SIZE; //fields per chunk
+
+    final byte[] tiles; //tile type codes, row by row (only to be changed through setTile)
+    final long[] playerWalkable = new long[SIZE]; //one row per long, bit x is set if field x can be walked on
+    final long[] computerWalkable = new long[SIZE];
+    boolean modified; //the chunk differs from its copy on disk (or there is none), so it must not be dropped
+    boolean shared; //the chunk belongs to a cached level (and maybe several grids), so it must be copied before changes
+    int lastUsed; //epoch of the grid in which the chunk was last accessed
+
+    /**
+     * Creates a chunk holding the given tiles.
+     *
+     * @param tiles tile type codes of the chunk, row by row (AREA entries)
+     */
+    TileChunk(byte[] tiles) {
+        this.tiles = tiles;
+        for (int i = 0; i < AREA; ++i) {
+            updateWalkable(i, tiles[i]);
+        }
+    }
+
+    /**
+     * Sets the tile type of a field of the chunk and updates the walkability bits.
+     *
+     * @param index index of the field within the chunk
+     * @param type  new tile type code
+     */
+    void setTile(int index, byte type) {
+        tiles[index] = type;
+        updateWalkable(index, type);
+    }
+
+    /**
+     * Sets the walkability bits of a field according to its tile type.
+     *
+     * @param index index of the field within the chunk
+     * @param type  tile type code of the field
+     */
+    private void updateWalkable(int index, byte type) {
+        int row = index >> SHIFT;
+        long bit = 1L << (index & MASK);
+        if (TileGrid.isPlayerWalkable(type)) {
+            playerWalkable[row] |= bit;
+        } else {
+            playerWalkable[row] &= ~bit;
+        }
+        if (TileGrid.isComputerWalkable(type)) {
+            computerWalkable[row] |= bit;
+        } else {
+            computerWalkable[row] &= ~bit;
+        }
+    }
+
+    /**
+     * Gets the index of a field within its chunk.
+     *
+     * @param x x coordinate of the field in the level
+     * @param y y coordinate of the field in the level
+     * @return index into the tiles of the chunk
+     */
+    static int indexOf(int x, int y) {
+        return ((y & MASK) << SHIFT) | (x & MASK);
+    }
+}
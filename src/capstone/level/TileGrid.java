@@ -0,0 +1,651 @@
+package capstone.level;
+
+import capstone.gameobject.staticObjects.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The tile grid holds the static part of a level in a compact form. Instead of one static game object per field, only
+ * a single byte describing the type of the field is stored. The static game objects handed out by the grid are shared
+ * flyweight instances, one per type, which is possible because static game objects do not know their own position.
+ * <p>
+ * The few bits of state that belong to a single field are kept in side tables: a static trap remembers when it last
+ * hurt the player. The table is split up like the tiles and only created for chunks in which a trap has gone off. Keys
+ * and health pickups do not need any state, since picking them up removes them from the grid altogether.
+ * <p>
+ * The type codes are identical to the ones used in the level files.
+ * <p>
+ * The fields are split up into chunks of 64x64 fields (see {@link TileChunk}). A grid can be backed by a
+ * {@link ChunkSource}, in which case chunks are only read from disk once they are accessed, and chunks that have not
+ * been used for a while and have not been modified are dropped again by {@link #evict(int)}. Chunks are read while
+ * the moving traps are updated on several cores, so loading a chunk is synchronized. Dropping chunks only ever happens
+ * on the game thread in between updates.
+ */
+public class TileGrid {
+    public static final byte EMPTY = -1;
+    public static final byte WALL = 0;
+    public static final byte ENTRANCE = 1;
+    public static final byte EXIT = 2;
+    public static final byte STATIC_TRAP = 3;
+    public static final byte KEY = 5;
+    public static final byte HEALTH = 6;
+    private static final long NO_COOLDOWN = Long.MIN_VALUE; //the trap on a field has never gone off
+
+    //one shared instance per tile type, indexed by type code. Code 4 is a moving trap, which is not a tile.
+    private static final StaticGameObject[] FLYWEIGHTS = {
+            new WallGameObject(),
+            new EntranceGameObject(),
+            new ExitGameObject(),
+            new StaticTrapGameObject(),
+            null,
+            new KeyGameObject(),
+            new HealthGameObject()
+    };
+    //walkability per type code, shifted by one so that EMPTY is at index 0
+    private static final boolean[] PLAYER_WALKABLE = new boolean[FLYWEIGHTS.length + 1];
+    private static final boolean[] COMPUTER_WALKABLE = new boolean[FLYWEIGHTS.length + 1];
+
+    static {
+        for (int i = 0; i < PLAYER_WALKABLE.length; ++i) {
+            StaticGameObject flyweight = getFlyweight((byte) (i - 1));
+            PLAYER_WALKABLE[i] = flyweight == null || flyweight.isPlayerWalkable();
+            COMPUTER_WALKABLE[i] = flyweight == null || flyweight.isComputerWalkable();
+        }
+    }
+
+    //directions as used by the moving objects, in the order of the bits returned by getWalkableDirections
+    public static final int UP = 1;
+    public static final int DOWN = 2;
+    public static final int LEFT = 4;
+    public static final int RIGHT = 8;
+
+    private final int width;
+    private final int height;
+    private final int chunksX; //amount of chunks per row
+    private final int chunksY; //amount of chunks per column
+    private final TileChunk[] chunks; //null for chunks that are not in memory (or entirely empty without a source)
+    private ChunkSource source;
+    private int residentChunks;
+    private int unreadableChunks; //chunks that could not be read from the source and were treated as empty
+    private int epoch; //advanced by the level once per tick, used to find chunks that have not been used for a while
+    private int modificationCount; //increased on every change of a tile, so others can tell whether they are outdated
+    private final long[][] trapCooldowns; //per chunk and field: time of last damage, null for chunks without any
+
+    /**
+     * Creates an empty tile grid of the given size.
+     *
+     * @param width  width of the grid in fields
+     * @param height height of the grid in fields
+     */
+    public TileGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + TileChunk.MASK) >> TileChunk.SHIFT;
+        this.chunksY = (height + TileChunk.MASK) >> TileChunk.SHIFT;
+        this.chunks = new TileChunk[chunksX * chunksY];
+        this.trapCooldowns = new long[chunksX * chunksY][];
+    }
+
+    /**
+     * Backs the grid by a chunk source. All chunks currently in memory are assumed to be identical to the ones the
+     * source provides, so they are no longer considered modified and may be dropped from now on.
+     *
+     * @param source source the chunks can be read from again
+     */
+    public void setChunkSource(ChunkSource source) {
+        this.source = source;
+        for (TileChunk chunk : chunks) {
+            if (chunk != null) {
+                chunk.modified = false;
+            }
+        }
+    }
+
+    /**
+     * Gets the chunk source backing the grid.
+     *
+     * @return chunk source, or null if the grid is held in memory completely
+     */
+    ChunkSource getChunkSource() {
+        return source;
+    }
+
+    /**
+     * Hands out the chunks currently in memory, so they can be shared with other grids (see {@link LevelCache}).
+     * From now on, these chunks are never changed again: every grid sharing them, including this one, copies a chunk
+     * before changing it.
+     *
+     * @return chunks of the grid (null for chunks that are not in memory)
+     */
+    TileChunk[] shareChunks() {
+        for (TileChunk chunk : chunks) {
+            if (chunk != null) {
+                chunk.shared = true;
+            }
+        }
+        return chunks.clone();
+    }
+
+    /**
+     * Fills an empty grid with chunks shared by another grid.
+     *
+     * @param sharedChunks chunks handed out by {@link #shareChunks()}
+     * @param source       chunk source of the other grid (may be null)
+     */
+    void adoptChunks(TileChunk[] sharedChunks, ChunkSource source) {
+        System.arraycopy(sharedChunks, 0, chunks, 0, chunks.length);
+        this.source = source;
+        residentChunks = 0;
+        for (TileChunk chunk : chunks) {
+            if (chunk != null) {
+                ++residentChunks;
+            }
+        }
+    }
+
+    /**
+     * Reads all chunks that are not in memory yet and stops using the chunk source, for instance because the file
+     * behind it is about to be deleted. Afterwards, the grid is held in memory completely.
+     */
+    void releaseChunkSource() {
+        if (source == null) {
+            return;
+        }
+        for (int chunkIndex = 0; chunkIndex < chunks.length; ++chunkIndex) {
+            TileChunk chunk = chunks[chunkIndex] != null ? chunks[chunkIndex] : loadChunk(chunkIndex);
+            chunk.modified = true;
+        }
+        source = null;
+    }
+
+    /**
+     * Finds the fields in which the grid differs from another grid of the same size, usually the level the grid was
+     * read from. Chunks that are shared between both grids, or that both read from the same chunk source without
+     * having changed them, are skipped without looking at their fields.
+     *
+     * @param base grid to compare with
+     * @return x, y and tile type code of every field that differs
+     */
+    int[] diff(TileGrid base) {
+        int[] changes = new int[3 * 16];
+        int count = 0;
+        for (int chunkIndex = 0; chunkIndex < chunks.length; ++chunkIndex) {
+            TileChunk chunk = chunks[chunkIndex];
+            TileChunk baseChunk = base.chunks[chunkIndex];
+            boolean sameSource = source != null && source == base.source;
+            if ((chunk != null && chunk == baseChunk) || (sameSource && (chunk == null || !chunk.modified)
+                    && (baseChunk == null || !baseChunk.modified))) {
+                continue;
+            }
+            byte[] tiles = getChunkTiles(chunkIndex);
+            byte[] baseTiles = base.getChunkTiles(chunkIndex);
+            int originX = (chunkIndex % chunksX) << TileChunk.SHIFT;
+            int originY = (chunkIndex / chunksX) << TileChunk.SHIFT;
+            for (int i = 0; i < TileChunk.AREA; ++i) {
+                byte type = tiles == null ? EMPTY : tiles[i];
+                byte baseType = baseTiles == null ? EMPTY : baseTiles[i];
+                int x = originX + (i & TileChunk.MASK);
+                int y = originY + (i >> TileChunk.SHIFT);
+                if (type != baseType && x < width && y < height) {
+                    if (count == changes.length) {
+                        changes = Arrays.copyOf(changes, count * 2);
+                    }
+                    changes[count++] = x;
+                    changes[count++] = y;
+                    changes[count++] = type;
+                }
+            }
+        }
+        return Arrays.copyOf(changes, count);
+    }
+
+    /**
+     * Gets the tiles of a chunk, reading it from the chunk source if necessary.
+     *
+     * @param chunkIndex index of the chunk
+     * @return tile type codes of the chunk, or null if the chunk is entirely empty
+     */
+    private byte[] getChunkTiles(int chunkIndex) {
+        TileChunk chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            if (source == null) {
+                return null;
+            }
+            chunk = loadChunk(chunkIndex);
+        }
+        return chunk.tiles;
+    }
+
+    /**
+     * Gets the chunk containing a field, reading it from the chunk source if necessary.
+     *
+     * @param x x coordinate of the field (must be within the grid)
+     * @param y y coordinate of the field (must be within the grid)
+     * @return chunk, or null if the chunk is entirely empty and has no source
+     */
+    private TileChunk getChunk(int x, int y) {
+        int chunkIndex = (y >> TileChunk.SHIFT) * chunksX + (x >> TileChunk.SHIFT);
+        TileChunk chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            if (source == null) {
+                return null;
+            }
+            chunk = loadChunk(chunkIndex);
+        }
+        chunk.lastUsed = epoch;
+        return chunk;
+    }
+
+    /**
+     * Reads a chunk from the chunk source. If it cannot be read, the chunk is treated as empty.
+     *
+     * @param chunkIndex index of the chunk
+     * @return chunk read from the source
+     */
+    private synchronized TileChunk loadChunk(int chunkIndex) {
+        TileChunk chunk = chunks[chunkIndex];
+        if (chunk != null) {
+            //another thread was faster
+            return chunk;
+        }
+        byte[] chunkTiles = new byte[TileChunk.AREA];
+        boolean failed = false;
+        try {
+            source.readChunk(chunkIndex % chunksX, chunkIndex / chunksX, chunkTiles);
+        } catch (IOException ex) {
+            //chunks are loaded while the game is on screen, so the failure is only counted
+            ++unreadableChunks;
+            Arrays.fill(chunkTiles, EMPTY);
+            failed = true;
+        }
+        chunk = new TileChunk(chunkTiles);
+        //a chunk that could not be read is kept, instead of trying again on every access
+        chunk.modified = failed;
+        chunk.lastUsed = epoch;
+        chunks[chunkIndex] = chunk;
+        ++residentChunks;
+        return chunk;
+    }
+
+    /**
+     * Advances the epoch of the grid. Chunks remember the epoch in which they were last accessed.
+     */
+    public void nextEpoch() {
+        ++epoch;
+    }
+
+    /**
+     * Makes sure all chunks overlapping a rectangle are in memory, and marks them as used in the current epoch.
+     *
+     * @param x      x coordinate of the rectangle
+     * @param y      y coordinate of the rectangle
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     */
+    public void retain(int x, int y, int width, int height) {
+        int fromX = Math.max(0, x);
+        int fromY = Math.max(0, y);
+        int toX = Math.min(this.width, x + width);
+        int toY = Math.min(this.height, y + height);
+        for (int chunkY = fromY >> TileChunk.SHIFT; chunkY << TileChunk.SHIFT < toY; ++chunkY) {
+            for (int chunkX = fromX >> TileChunk.SHIFT; chunkX << TileChunk.SHIFT < toX; ++chunkX) {
+                getChunk(chunkX << TileChunk.SHIFT, chunkY << TileChunk.SHIFT);
+            }
+        }
+    }
+
+    /**
+     * Drops all chunks from memory that have not been accessed for the given amount of epochs, unless they have been
+     * modified. Dropped chunks are read from the chunk source again once they are needed. Without a chunk source,
+     * nothing is dropped.
+     *
+     * @param maxIdleEpochs amount of epochs a chunk may go unused before it is dropped
+     * @return amount of dropped chunks
+     */
+    public int evict(int maxIdleEpochs) {
+        if (source == null) {
+            return 0;
+        }
+        int evicted = 0;
+        for (int i = 0; i < chunks.length; ++i) {
+            TileChunk chunk = chunks[i];
+            if (chunk != null && !chunk.modified && epoch - chunk.lastUsed > maxIdleEpochs) {
+                chunks[i] = null;
+                ++evicted;
+            }
+        }
+        residentChunks -= evicted;
+        return evicted;
+    }
+
+    /**
+     * Gets the total amount of chunks the grid is made of.
+     *
+     * @return amount of chunks
+     */
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Gets the amount of chunks that are currently held in memory.
+     *
+     * @return amount of chunks in memory
+     */
+    public int getResidentChunkCount() {
+        return residentChunks;
+    }
+
+    /**
+     * Gets the amount of chunks that could not be read from the source and were treated as empty instead.
+     *
+     * @return amount of unreadable chunks
+     */
+    public int getUnreadableChunkCount() {
+        return unreadableChunks;
+    }
+
+    /**
+     * Gets the shared static game object representing a tile type.
+     *
+     * @param type tile type code
+     * @return flyweight game object, or null for empty fields and unknown types
+     */
+    public static StaticGameObject getFlyweight(byte type) {
+        if (type < 0 || type >= FLYWEIGHTS.length) {
+            return null;
+        }
+        return FLYWEIGHTS[type];
+    }
+
+    /**
+     * Gets the tile type code for a static game object.
+     *
+     * @param s static game object
+     * @return tile type code, EMPTY for null
+     */
+    public static byte getTileType(StaticGameObject s) {
+        if (s == null) {
+            return EMPTY;
+        }
+        for (byte type = 0; type < FLYWEIGHTS.length; ++type) {
+            if (FLYWEIGHTS[type] != null && FLYWEIGHTS[type].getClass() == s.getClass()) {
+                return type;
+            }
+        }
+        System.out.println("Warning: " + s.getName() + " cannot be stored in a tile grid.");
+        return EMPTY;
+    }
+
+    /**
+     * Whether a coordinate lies within the grid.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return coordinate is within the grid
+     */
+    public boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Gets the static game object on a field.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return shared static game object, or null if the field is empty or outside of the grid
+     */
+    public StaticGameObject get(int x, int y) {
+        return getFlyweight(getTileType(x, y));
+    }
+
+    /**
+     * Gets the tile type of a field.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return tile type code, EMPTY if the field is empty or outside of the grid
+     */
+    public byte getTileType(int x, int y) {
+        if (!isInside(x, y)) {
+            return EMPTY;
+        }
+        TileChunk chunk = getChunk(x, y);
+        return chunk == null ? EMPTY : chunk.tiles[TileChunk.indexOf(x, y)];
+    }
+
+    /**
+     * Hands all fields of a rectangle that lie within the grid to a visitor, row by row. The rectangle may reach
+     * beyond the grid on any side, the fields outside are skipped. Each chunk is only looked up once per row.
+     *
+     * @param x       x coordinate of the top left corner
+     * @param y       y coordinate of the top left corner
+     * @param width   width of the rectangle
+     * @param height  height of the rectangle
+     * @param visitor visitor to be called for every field
+     */
+    public void visitTiles(int x, int y, int width, int height, TileVisitor visitor) {
+        int fromX = Math.max(x, 0);
+        int toX = (int) Math.min((long) x + width, this.width);
+        int toY = (int) Math.min((long) y + height, this.height);
+        for (int row = Math.max(y, 0); row < toY; ++row) {
+            int column = fromX;
+            while (column < toX) {
+                //the fields up to the end of the chunk (or of the rectangle)
+                int end = Math.min(toX, (column | TileChunk.MASK) + 1);
+                TileChunk chunk = getChunk(column, row);
+                for (int index = TileChunk.indexOf(column, row); column < end; ++column, ++index) {
+                    visitor.visitTile(column, row, chunk == null ? EMPTY : chunk.tiles[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the tile types of a rectangle into a buffer, row by row. The rectangle may reach beyond the grid on any
+     * side, the fields outside are EMPTY. Within the grid, the tiles are copied chunk by chunk.
+     *
+     * @param x           x coordinate of the top left corner
+     * @param y           y coordinate of the top left corner
+     * @param width       width of the rectangle
+     * @param height      height of the rectangle
+     * @param destination buffer of at least width * height entries
+     */
+    public void copyTileTypes(int x, int y, int width, int height, byte[] destination) {
+        int fromX = Math.max(x, 0);
+        int toX = (int) Math.max(Math.min((long) x + width, this.width), fromX);
+        for (int row = 0; row < height; ++row) {
+            int start = row * width;
+            int levelY = y + row;
+            if (levelY < 0 || levelY >= this.height || fromX >= toX) {
+                Arrays.fill(destination, start, start + width, EMPTY);
+                continue;
+            }
+            //fields to the left and the right of the grid
+            Arrays.fill(destination, start, start + fromX - x, EMPTY);
+            Arrays.fill(destination, start + toX - x, start + width, EMPTY);
+            int column = fromX;
+            while (column < toX) {
+                int end = Math.min(toX, (column | TileChunk.MASK) + 1);
+                TileChunk chunk = getChunk(column, levelY);
+                if (chunk == null) {
+                    Arrays.fill(destination, start + column - x, start + end - x, EMPTY);
+                } else {
+                    System.arraycopy(chunk.tiles, TileChunk.indexOf(column, levelY), destination, start + column - x, end - column);
+                }
+                column = end;
+            }
+        }
+    }
+
+    /**
+     * Whether a field can be walked on. Fields outside of the grid cannot be walked on, empty fields always can.
+     *
+     * @param x        x coordinate of the field
+     * @param y        y coordinate of the field
+     * @param isPlayer check for the player (true) or for the moving traps (false)
+     * @return field is walkable
+     */
+    public boolean isWalkable(int x, int y, boolean isPlayer) {
+        if (!isInside(x, y)) {
+            return false;
+        }
+        TileChunk chunk = getChunk(x, y);
+        if (chunk == null) {
+            return true;
+        }
+        long row = (isPlayer ? chunk.playerWalkable : chunk.computerWalkable)[y & TileChunk.MASK];
+        return (row & (1L << (x & TileChunk.MASK))) != 0;
+    }
+
+    /**
+     * Gets the directions in which the neighbouring fields of a field can be walked on.
+     *
+     * @param x        x coordinate of the field
+     * @param y        y coordinate of the field
+     * @param isPlayer check for the player (true) or for the moving traps (false)
+     * @return combination of UP, DOWN, LEFT and RIGHT
+     */
+    public int getWalkableDirections(int x, int y, boolean isPlayer) {
+        int directions = 0;
+        if (isWalkable(x, y - 1, isPlayer)) {
+            directions |= UP;
+        }
+        if (isWalkable(x, y + 1, isPlayer)) {
+            directions |= DOWN;
+        }
+        if (isWalkable(x - 1, y, isPlayer)) {
+            directions |= LEFT;
+        }
+        if (isWalkable(x + 1, y, isPlayer)) {
+            directions |= RIGHT;
+        }
+        return directions;
+    }
+
+    /**
+     * Whether the player can walk on fields of a tile type.
+     *
+     * @param type tile type code
+     * @return player can walk on the tile
+     */
+    static boolean isPlayerWalkable(byte type) {
+        return type < EMPTY || type >= FLYWEIGHTS.length || PLAYER_WALKABLE[type + 1];
+    }
+
+    /**
+     * Whether the moving traps can walk on fields of a tile type.
+     *
+     * @param type tile type code
+     * @return moving traps can walk on the tile
+     */
+    static boolean isComputerWalkable(byte type) {
+        return type < EMPTY || type >= FLYWEIGHTS.length || COMPUTER_WALKABLE[type + 1];
+    }
+
+    /**
+     * Sets the tile type of a field. Any state attached to the previous tile is dropped.
+     *
+     * @param x    x coordinate of the field
+     * @param y    y coordinate of the field
+     * @param type new tile type code
+     */
+    public void setTileType(int x, int y, byte type) {
+        if (!isInside(x, y)) {
+            throw new ArrayIndexOutOfBoundsException("Field " + x + "," + y + " is outside of the level");
+        }
+        TileChunk chunk = getChunk(x, y);
+        if (chunk == null) {
+            if (type == EMPTY) {
+                //nothing to do, the chunk is empty anyway
+                return;
+            }
+            byte[] chunkTiles = new byte[TileChunk.AREA];
+            Arrays.fill(chunkTiles, EMPTY);
+            chunk = new TileChunk(chunkTiles);
+            chunk.lastUsed = epoch;
+            chunks[(y >> TileChunk.SHIFT) * chunksX + (x >> TileChunk.SHIFT)] = chunk;
+            ++residentChunks;
+        } else if (chunk.shared) {
+            if (chunk.tiles[TileChunk.indexOf(x, y)] == type) {
+                return;
+            }
+            //the chunk belongs to a cached level, this grid gets its own copy before changing it
+            chunk = new TileChunk(Arrays.copyOf(chunk.tiles, TileChunk.AREA));
+            chunk.lastUsed = epoch;
+            chunks[(y >> TileChunk.SHIFT) * chunksX + (x >> TileChunk.SHIFT)] = chunk;
+        }
+        chunk.setTile(TileChunk.indexOf(x, y), type);
+        chunk.modified = true;
+        ++modificationCount;
+        long[] cooldowns = trapCooldowns[chunkIndexOf(x, y)];
+        if (cooldowns != null) {
+            cooldowns[TileChunk.indexOf(x, y)] = NO_COOLDOWN;
+        }
+    }
+
+    /**
+     * Checks whether the cooldown of a field has expired, and if so, restarts it. Used by static traps to hurt the
+     * player at most once per cooldown.
+     *
+     * @param x              x coordinate of the field
+     * @param y              y coordinate of the field
+     * @param cooldownMillis length of the cooldown in milliseconds
+     * @param now            current game time in milliseconds
+     * @return the cooldown had expired
+     */
+    public boolean checkCooldown(int x, int y, int cooldownMillis, long now) {
+        int chunkIndex = chunkIndexOf(x, y);
+        long[] cooldowns = trapCooldowns[chunkIndex];
+        if (cooldowns == null) {
+            cooldowns = new long[TileChunk.AREA];
+            Arrays.fill(cooldowns, NO_COOLDOWN);
+            trapCooldowns[chunkIndex] = cooldowns;
+        }
+        int index = TileChunk.indexOf(x, y);
+        if (cooldowns[index] != NO_COOLDOWN && now - cooldowns[index] <= cooldownMillis) {
+            return false;
+        }
+        cooldowns[index] = now;
+        return true;
+    }
+
+    /**
+     * Gets the index of the chunk containing a field.
+     *
+     * @param x x coordinate of the field (must be within the grid)
+     * @param y y coordinate of the field (must be within the grid)
+     * @return chunk index
+     */
+    private int chunkIndexOf(int x, int y) {
+        return (y >> TileChunk.SHIFT) * chunksX + (x >> TileChunk.SHIFT);
+    }
+
+    /**
+     * Gets the amount of tile changes so far. If it has not changed, neither have the tiles.
+     *
+     * @return modification count
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Get the width of the grid
+     *
+     * @return width in fields
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the grid
+     *
+     * @return height in fields
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,17 @@
+package capstone.level;
+
+/**
+ * A tile visitor is handed the fields of a rectangle of a level one after another, row by row.
+ *
+ * @see Level#visitTiles(int, int, int, int, TileVisitor)
+ */
+public interface TileVisitor {
+    /**
+     * Looks at a single field.
+     *
+     * @param x    x coordinate of the field in the level
+     * @param y    y coordinate of the field in the level
+     * @param type tile type code of the field (see {@link TileGrid}), EMPTY if there is no static game object on it
+     */
+    void visitTile(int x, int y, byte type);
+}
@@ -1,45 +1,129 @@
 package capstone.notificationcenter;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The notification center is a central hub within the game for status messages that concern a varying number of client
  * classes. See the available NotificationMessages.
+ * <p>
+ * Clients subscribe to the notifications they care about and are called once one of them arrives, instead of asking
+ * the center on every frame whether it has arrived. Notifications may be posted from any thread, for instance once a
+ * level has been saved in the background: posting only appends the notification to a lock-free queue that many
+ * threads can add to, but only the game thread takes from. Once per tick, the game loop hands the queued notifications
+ * to their subscribers on the game thread, so subscribers never have to synchronize with the posting thread.
  */
 public class NotificationCenter {
-    private static final ArrayList<NotificationMessage> notifications = new ArrayList<>();
+    private static final EnumMap<NotificationMessage, ArrayList<NotificationListener>> subscribers =
+            new EnumMap<>(NotificationMessage.class);
+    private static long subscribedMask; //bit per notification (by ordinal) that has at least one subscriber
+    //the queue is a linked list of nodes: posting threads swap in a new tail, the game thread walks along from the head
+    private static final AtomicReference<Node> tail = new AtomicReference<>(new Node(null));
+    private static Node head = tail.get(); //last node taken out, only touched by the game thread
+
+    static {
+        for (NotificationMessage message : NotificationMessage.values()) {
+            subscribers.put(message, new ArrayList<>());
+        }
+    }
 
     /**
-     * Adds a new notification to the queued Notifications
+     * Adds a new notification to the queued notifications. It is handed to the subscribers during the next dispatch.
+     * Can be called from any thread and never blocks.
      *
      * @param n Notification to be posted
      */
     public static void postNotification(NotificationMessage n) {
-        System.out.println(n);
-        notifications.add(n);
+        Node node = new Node(n);
+        //the previous tail only learns about its successor afterwards, until then the game thread stops before it
+        tail.getAndSet(node).next = node;
+    }
+
+    /**
+     * Hands all notifications posted so far to their subscribers, in the order they were posted. Notifications that
+     * are posted by a subscriber are handed out during the same dispatch. Must only be called on the game thread.
+     */
+    public static void dispatch() {
+        Node next;
+        while ((next = head.next) != null) {
+            head = next;
+            NotificationMessage message = next.message;
+            if ((subscribedMask & bit(message)) == 0) {
+                continue;
+            }
+            ArrayList<NotificationListener> listeners = subscribers.get(message);
+            for (int i = 0; i < listeners.size(); ++i) {
+                listeners.get(i).onNotification(message);
+            }
+        }
+    }
+
+    /**
+     * Subscribes a listener to the given notifications. Must only be called on the game thread.
+     *
+     * @param messages notifications the listener is interested in
+     * @param listener listener to be called when one of them arrives
+     */
+    public static void subscribe(Set<NotificationMessage> messages, NotificationListener listener) {
+        for (NotificationMessage message : messages) {
+            ArrayList<NotificationListener> listeners = subscribers.get(message);
+            if (!listeners.contains(listener)) {
+                listeners.add(listener);
+            }
+            subscribedMask |= bit(message);
+        }
     }
 
     /**
-     * Checks whether there is a notification with the given Tag.
+     * Removes a listener from all notifications it has subscribed to. Must only be called on the game thread.
      *
-     * @param comparingNotification Notification value
-     * @return whether a notification exists
+     * @param listener listener to be removed
      */
-    public static boolean checkForNotification(NotificationMessage comparingNotification) {
-        for (NotificationMessage notificationMessage : notifications) {
-            if (comparingNotification == notificationMessage) {
-                return true;
+    public static void unsubscribe(NotificationListener listener) {
+        for (NotificationMessage message : NotificationMessage.values()) {
+            ArrayList<NotificationListener> listeners = subscribers.get(message);
+            if (listeners.remove(listener) && listeners.isEmpty()) {
+                subscribedMask &= ~bit(message);
             }
         }
-        return false;
     }
 
     /**
-     * Removes a notification with a given tag from the center.
+     * Whether anybody has subscribed to a notification.
+     *
+     * @param message notification
+     * @return there is at least one subscriber
+     */
+    public static boolean hasSubscribers(NotificationMessage message) {
+        return (subscribedMask & bit(message)) != 0;
+    }
+
+    /**
+     * Gets the bit standing for a notification in the subscription mask.
      *
-     * @param n notification to be removed.
+     * @param message notification
+     * @return mask with only the bit of the notification set
      */
-    public static void removeNotification(NotificationMessage n) {
-        notifications.remove(n);
+    private static long bit(NotificationMessage message) {
+        return 1L << message.ordinal();
+    }
+
+    /**
+     * A queued notification.
+     */
+    private static class Node {
+        private final NotificationMessage message;
+        private volatile Node next;
+
+        /**
+         * Creates a node that is not linked to the queue yet.
+         *
+         * @param message notification, null for the initial node
+         */
+        Node(NotificationMessage message) {
+            this.message = message;
+        }
     }
 }
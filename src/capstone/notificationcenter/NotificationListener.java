@@ -0,0 +1,15 @@
+package capstone.notificationcenter;
+
+/**
+ * A notification listener is called by the NotificationCenter whenever a notification it has subscribed to arrives.
+ *
+ * @see NotificationCenter#subscribe(java.util.Set, NotificationListener)
+ */
+public interface NotificationListener {
+    /**
+     * Reacts to a notification. Always called on the game thread, no matter which thread has posted it.
+     *
+     * @param message notification that has arrived
+     */
+    void onNotification(NotificationMessage message);
+}
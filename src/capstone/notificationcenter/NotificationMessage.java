@@ -15,5 +15,7 @@ public enum NotificationMessage {
     LEGEND, // expresses the intent to open the legend
     SAVE_LOAD_SUCCESS, // information that loading the save was successful.
     SAVE_SAVE_SUCCESS, // information that saving the file was successful.
+    SAVE_SAVE_FAILURE, // information that saving the file in the background has failed.
+    AUTOSAVE_FAILURE, // information that writing the autosave has failed.
     LEVEL_LOAD_SUCCESS // information that loading the level was successful.
 }
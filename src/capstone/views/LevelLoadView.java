@@ -1,6 +1,8 @@
 package capstone.views;
 
+import capstone.level.Level;
 import capstone.level.LevelInputOutput;
+import capstone.level.LevelLoadProgress;
 import capstone.notificationcenter.NotificationCenter;
 import capstone.notificationcenter.NotificationMessage;
 import capstone.views.levelview.LevelView;
@@ -8,15 +10,19 @@ import com.googlecode.lanterna.input.Key;
 import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.terminal.Terminal;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Upon request, the user can be presented with a Level Load View. It shows the player all the available levels /
  * files ending in .properties. The user can then type a filename. Upon pressing Enter, the game will load the level
- * and catapult him into the action.
+ * and catapult him into the action. The level is read in the background, so the game keeps running while a large
+ * level is read. Meanwhile, a progress bar is shown and the reading can be cancelled with escape.
  */
 public class LevelLoadView extends View {
+    private static final int PROGRESS_BAR_LENGTH = 40;
 
     private boolean hasDrawnStatics;
     private String filename = "";
@@ -26,6 +32,10 @@ public class LevelLoadView extends View {
     private boolean statusLineDrawn;
     private LevelView levelView;
     private ArrayList<String> fileNames;
+    private CompletableFuture<Level> loading; //level currently being read, null if none
+    private LevelLoadProgress loadingProgress;
+    private String loadingFilename;
+    private int drawnPercentage = -1;
 
     /**
      * Generates a new view with the given parameters.
@@ -42,12 +52,21 @@ public class LevelLoadView extends View {
 
     /**
      * Process the player keystrokes. If it is a normal character, write it to the variable that will be printed to
-     * the screen in the update routine. Also enables the backspace and escape keys.
+     * the screen in the update routine. Also enables the backspace and escape keys. While a level is being read, only
+     * escape is processed, which cancels the reading.
      *
      * @param keystroke keystroke of the player
      */
     @Override
     public void processKeystroke(Key keystroke) {
+        if (loading != null) {
+            if (keystroke.getKind() == Key.Kind.Escape) {
+                loadingProgress.cancel();
+                loading.cancel(false);
+                finishLoading();
+            }
+            return;
+        }
         if (keystroke.getKind() == Key.Kind.NormalKey) {
             filename += keystroke.getCharacter();
         }
@@ -69,7 +88,8 @@ public class LevelLoadView extends View {
 
     /**
      * Updates the view based on the passed time. Will draw the characters of the typed filename and intelligently
-     * add or remove new characters to the screen.
+     * add or remove new characters to the screen. While a level is being read, the progress bar is drawn, and the
+     * level is handed to the level view once it has been read.
      *
      * @param deltatime time delta since last call
      * @return successful screen update
@@ -100,6 +120,13 @@ public class LevelLoadView extends View {
             //draw status line if necessary
             screen.putString(0, 3, statusLine, Terminal.Color.RED, Terminal.Color.DEFAULT);
         }
+        if (loading != null) {
+            if (loading.isDone()) {
+                finishLoading();
+            } else {
+                drawProgress();
+            }
+        }
         return true;
     }
 
@@ -112,25 +139,63 @@ public class LevelLoadView extends View {
         hasDrawnStatics = false;
         oldFilename = "";
         statusLineDrawn = false;
+        drawnPercentage = -1;
     }
 
-    @Override
-    public void managementUpdate() {
+    /**
+     * Starts reading the level with the typed filename in the background.
+     */
+    private void loadLevel() {
+        loadingFilename = filename;
+        loadingProgress = new LevelLoadProgress();
+        loading = LevelInputOutput.readLevelAsync(loadingFilename, loadingProgress);
+        drawnPercentage = -1;
+        statusLine = "";
+        hasDrawnStatics = false;
+    }
 
+    /**
+     * Draws the progress bar of the level being read, if its progress has changed.
+     */
+    private void drawProgress() {
+        int percentage = loadingProgress.getPercentage();
+        if (percentage == drawnPercentage) {
+            return;
+        }
+        drawnPercentage = percentage;
+        int filled = percentage * PROGRESS_BAR_LENGTH / 100;
+        StringBuilder bar = new StringBuilder("Loading " + loadingFilename + " [");
+        for (int i = 0; i < PROGRESS_BAR_LENGTH; ++i) {
+            bar.append(i < filled ? '#' : ' ');
+        }
+        bar.append("] ").append(percentage).append("% (").append(loadingProgress.getBytesRead() >> 10)
+                .append(" of ").append(loadingProgress.getTotalBytes() >> 10).append(" KB), escape to cancel");
+        screen.putString(0, 2, bar.toString(), Terminal.Color.GREEN, Terminal.Color.DEFAULT);
     }
 
-    private void loadLevel() {
+    /**
+     * Takes the result of the level reading: either the level is handed to the level view, or the reason why there is
+     * no level is shown.
+     */
+    private void finishLoading() {
+        CompletableFuture<Level> finished = loading;
+        loading = null;
         try {
-            this.levelView.setLevel(LevelInputOutput.readLevel(filename));
+            Level level = finished.join();
+            LevelInputOutput.announceLevel(level);
+            this.levelView.setLevel(level);
             this.viewStackRemoval = true;
             NotificationCenter.postNotification(NotificationMessage.CONTINUE);
-        } catch (IOException | IllegalArgumentException ex) {
-            ex.printStackTrace();
-            this.statusLine = "Loading level " + filename + " failed. Maybe check filename?";
-            this.filename = "";
-            this.statusLineDrawn = false;
-            hasDrawnStatics = false;
-            //refresh screen to ensure that the error message is printed ingame
+            return;
+        } catch (CancellationException ex) {
+            this.statusLine = "Loading level " + loadingFilename + " was cancelled.";
+        } catch (CompletionException ex) {
+            ex.getCause().printStackTrace();
+            this.statusLine = "Loading level " + loadingFilename + " failed. Maybe check filename?";
         }
+        this.filename = "";
+        this.statusLineDrawn = false;
+        hasDrawnStatics = false;
+        //refresh screen to ensure that the error message is printed ingame
     }
 }
@@ -1,9 +1,14 @@
 package capstone.views;
 
+import capstone.notificationcenter.NotificationListener;
+import capstone.notificationcenter.NotificationMessage;
 import com.googlecode.lanterna.input.Key;
 import com.googlecode.lanterna.screen.Screen;
 
-public abstract class View {
+import java.util.EnumSet;
+import java.util.Set;
+
+public abstract class View implements NotificationListener {
     protected final Screen screen;
     protected int width;
     protected int height;
@@ -39,6 +44,13 @@ public abstract class View {
      */
     public abstract boolean update(int deltatime);
 
+    /**
+     * The view draws itself to the screen. This is called at most once per refresh of the screen, while update may be
+     * called several times in between. Views that are cheap to draw may simply draw during their update instead.
+     */
+    public void render() {
+    }
+
     /**
      * The view will handle a resize of the window in width and/or height
      */
@@ -63,9 +75,24 @@ public abstract class View {
     }
 
     /**
-     * The view updates itself regardless of its position in the view manager, even in background.
+     * Gets the notifications the view wants to receive while it is on the view stack, regardless of its position in
+     * the stack (even in background). By default, a view is not interested in any notifications.
+     *
+     * @return notifications handed to {@link #onNotification(NotificationMessage)}
+     */
+    public Set<NotificationMessage> getSubscriptions() {
+        return EnumSet.noneOf(NotificationMessage.class);
+    }
+
+    /**
+     * The view reacts to one of the notifications it has subscribed to, e.g. by cleaning up after itself or by
+     * requesting to be removed from the view stack.
+     *
+     * @param message notification that has arrived
      */
-    public abstract void managementUpdate();
+    @Override
+    public void onNotification(NotificationMessage message) {
+    }
 
     /**
      * Resets the intention to add something to the view manager in order to prevent multiple additions of the same
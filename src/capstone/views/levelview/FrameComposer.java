@@ -0,0 +1,217 @@
+package capstone.views.levelview;
+
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.terminal.Terminal;
+
+import java.util.Arrays;
+
+/**
+ * The frame composer sits between the level view and the lanterna screen. Instead of writing to the screen directly,
+ * the level view and the HUD put their characters into a cell buffer: first the static layer, then the dynamic game
+ * objects on top of it, then the HUD. Once the frame is complete, the buffer is compared with the frame that was last
+ * handed to the screen, and only the cells that differ are written, joined into runs of the same colors.
+ * <p>
+ * Every cell is packed into a single int: the character in the upper 16 bits, followed by the ordinals of the
+ * foreground and the background color with 8 bits each. Drawing the same thing twice, or drawing a field and then
+ * covering it with the same character again, thus costs nothing on the screen.
+ * <p>
+ * Whenever something else has written to the screen (e.g. a menu, or the screen has been cleared), the composer has to
+ * be told so by {@link #invalidate()}, so the next frame is written as a whole.
+ */
+class FrameComposer {
+    private static final Terminal.Color[] COLORS = Terminal.Color.values();
+    private static final int INVALID = -1; //no cell ever packs to this, so it differs from everything
+    static final int BLANK = pack(' ', Terminal.Color.DEFAULT, Terminal.Color.DEFAULT);
+
+    private final Screen screen;
+    private final int width;
+    private final int height;
+    private final int[] frame; //frame that is being composed
+    private final int[] emitted; //frame that was last handed to the screen
+    private final char[] run; //characters of the run that is being written, reused for every run
+    private int emittedCells; //cells written to the screen by the last flush
+
+    /**
+     * Creates a composer covering the given area of the screen, starting at its top left corner. The first frame is
+     * written as a whole.
+     *
+     * @param screen lanterna screen to write to
+     * @param width  width of the area in cells
+     * @param height height of the area in cells
+     */
+    FrameComposer(Screen screen, int width, int height) {
+        this.screen = screen;
+        this.width = Math.max(width, 0);
+        this.height = Math.max(height, 0);
+        this.frame = new int[this.width * this.height];
+        this.emitted = new int[this.width * this.height];
+        this.run = new char[this.width];
+        Arrays.fill(frame, BLANK);
+        invalidate();
+    }
+
+    /**
+     * Packs a character and its colors into a cell.
+     *
+     * @param c          character
+     * @param foreground foreground color
+     * @param background background color
+     * @return packed cell
+     */
+    static int pack(char c, Terminal.Color foreground, Terminal.Color background) {
+        return c << 16 | foreground.ordinal() << 8 | background.ordinal();
+    }
+
+    /**
+     * Puts a single character into the frame. Cells outside of the area are ignored.
+     *
+     * @param x          x coordinate on the screen
+     * @param y          y coordinate on the screen
+     * @param c          character
+     * @param foreground foreground color
+     * @param background background color
+     */
+    void put(int x, int y, char c, Terminal.Color foreground, Terminal.Color background) {
+        put(x, y, pack(c, foreground, background));
+    }
+
+    /**
+     * Puts a packed cell into the frame. Cells outside of the area are ignored.
+     *
+     * @param x    x coordinate on the screen
+     * @param y    y coordinate on the screen
+     * @param cell packed cell
+     */
+    void put(int x, int y, int cell) {
+        if (x >= 0 && y >= 0 && x < width && y < height) {
+            frame[y * width + x] = cell;
+        }
+    }
+
+    /**
+     * Puts a string into the frame, starting at the given cell and going to the right. Characters outside of the area
+     * are ignored.
+     *
+     * @param x          x coordinate of the first character on the screen
+     * @param y          y coordinate on the screen
+     * @param s          string
+     * @param foreground foreground color
+     * @param background background color
+     */
+    void putString(int x, int y, String s, Terminal.Color foreground, Terminal.Color background) {
+        for (int i = 0; i < s.length(); ++i) {
+            put(x + i, y, s.charAt(i), foreground, background);
+        }
+    }
+
+    /**
+     * Copies a block of packed cells into the frame. The block has to fit into the area.
+     *
+     * @param x      x coordinate of the top left corner
+     * @param y      y coordinate of the top left corner
+     * @param width  width of the block
+     * @param height height of the block
+     * @param cells  cells of the block, row by row
+     */
+    void putCells(int x, int y, int width, int height, int[] cells) {
+        for (int row = 0; row < height; ++row) {
+            System.arraycopy(cells, row * width, frame, (y + row) * this.width + x, width);
+        }
+    }
+
+    /**
+     * Shifts the content of a rectangle of the frame, as if a camera looking at it had moved by the given amount of
+     * cells. Cells that are moved out of the rectangle are lost; the cells that are uncovered keep their old content
+     * and have to be composed again.
+     *
+     * @param dx     columns the camera has moved to the right (negative: to the left)
+     * @param dy     rows the camera has moved down (negative: up)
+     * @param x      x coordinate of the top left corner of the rectangle
+     * @param y      y coordinate of the top left corner of the rectangle
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     */
+    void scroll(int dx, int dy, int x, int y, int width, int height) {
+        int length = width - Math.abs(dx);
+        if (length <= 0 || Math.abs(dy) >= height) {
+            return;
+        }
+        int fromX = x + Math.max(dx, 0);
+        int toX = x + Math.max(-dx, 0);
+        //go through the rows in the direction of the move, so no row is overwritten before it has been moved
+        if (dy >= 0) {
+            for (int row = y; row < y + height - dy; ++row) {
+                System.arraycopy(frame, (row + dy) * this.width + fromX, frame, row * this.width + toX, length);
+            }
+        } else {
+            for (int row = y + height - 1; row >= y - dy; --row) {
+                System.arraycopy(frame, (row + dy) * this.width + fromX, frame, row * this.width + toX, length);
+            }
+        }
+    }
+
+    /**
+     * Fills a rectangle of the frame with blank cells.
+     *
+     * @param x      x coordinate of the top left corner
+     * @param y      y coordinate of the top left corner
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     */
+    void clear(int x, int y, int width, int height) {
+        int fromX = Math.max(x, 0);
+        int toX = Math.min(x + width, this.width);
+        for (int row = Math.max(y, 0); row < y + height && row < this.height; ++row) {
+            if (fromX < toX) {
+                Arrays.fill(frame, row * this.width + fromX, row * this.width + toX, BLANK);
+            }
+        }
+    }
+
+    /**
+     * Forgets what has been handed to the screen, so the next flush writes every cell. Has to be called whenever the
+     * screen has been written to by someone else.
+     */
+    void invalidate() {
+        Arrays.fill(emitted, INVALID);
+    }
+
+    /**
+     * Writes the cells of the frame that differ from the last frame to the screen. Neighbouring changed cells of the
+     * same colors are written with a single call. The frame itself is kept, so the next one can be composed on top of
+     * it.
+     */
+    void flush() {
+        emittedCells = 0;
+        for (int y = 0; y < height; ++y) {
+            int row = y * width;
+            int x = 0;
+            while (x < width) {
+                if (frame[row + x] == emitted[row + x]) {
+                    ++x;
+                    continue;
+                }
+                //collect the changed cells to the right that share the colors of this one
+                int colors = frame[row + x] & 0xFFFF;
+                int start = x;
+                int length = 0;
+                while (x < width && frame[row + x] != emitted[row + x] && (frame[row + x] & 0xFFFF) == colors) {
+                    run[length++] = (char) (frame[row + x] >>> 16);
+                    emitted[row + x] = frame[row + x];
+                    ++x;
+                }
+                screen.putString(start, y, new String(run, 0, length), COLORS[colors >>> 8], COLORS[colors & 0xFF]);
+                emittedCells += length;
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of cells the last flush has written to the screen.
+     *
+     * @return amount of cells
+     */
+    int getEmittedCells() {
+        return emittedCells;
+    }
+}
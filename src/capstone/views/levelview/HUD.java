@@ -5,18 +5,18 @@ package capstone.views.levelview;
  * view to keep the player updated about his status in the game.
  */
 
-import capstone.DeltaTimeHelper;
+import capstone.GameClock;
 import capstone.gameobject.dynamicObjects.PlayerGameObject;
-import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.terminal.Terminal;
 
 public class HUD {
-    private final Screen screen;
+    private final FrameComposer composer;
     private final PlayerGameObject player;
     private final int xOffset, yOffset;
     private final int width, height;
 
-    private final DeltaTimeHelper deltaTimeHelper;
+    private final GameClock clock;
+    private long scoreSnapshotTime; //game time at which the score snapshot was taken
     private boolean needsUpdate;
 
     //Keep track of the player information displayed for efficient rendering.
@@ -50,45 +50,45 @@ public class HUD {
     /**
      * Creates a new HUD that can then be rendered alongside a level view.
      *
-     * @param screen  Lanterna screen to render to
-     * @param player  Player object from which the information displayed will be extracted.
-     * @param xOffset x offset on the screen
-     * @param yOffset y offset on the screen
-     * @param width   width of the HUD
-     * @param height  height of the HUD
+     * @param composer frame composer of the level view to render to
+     * @param player   Player object from which the information displayed will be extracted.
+     * @param clock    game clock of the level, used to determine the score change per second
+     * @param xOffset  x offset on the screen
+     * @param yOffset  y offset on the screen
+     * @param width    width of the HUD
+     * @param height   height of the HUD
      */
-    public HUD(Screen screen, PlayerGameObject player, int xOffset, int yOffset, int width, int height) {
-        this.screen = screen;
+    HUD(FrameComposer composer, PlayerGameObject player, GameClock clock, int xOffset, int yOffset, int width, int height) {
+        this.composer = composer;
         this.player = player;
         this.xOffset = xOffset;
         this.yOffset = yOffset;
         this.width = width;
         this.height = height;
-        this.deltaTimeHelper = new DeltaTimeHelper();
+        this.clock = clock;
+        this.scoreSnapshotTime = clock.getTime();
         this.needsUpdate = true;
     }
 
     /**
-     * Flushes the display for the lives / hearts. This is done simply by overwriting only the display characters.
+     * Flushes the display for the lives / hearts, from its start to the end of the row.
      */
     private void flushHearts() {
-        screen.putString(xOffset + heartsXOffset, yOffset + heartsYOffset, "                    ", Terminal.Color.DEFAULT, Terminal.Color.DEFAULT);
+        composer.clear(xOffset + heartsXOffset, yOffset + heartsYOffset, width - heartsXOffset, 1);
     }
 
     /**
-     * Flushes the display that indicates whether the player has already picked up a key.
-     * This is done simply by overwriting only the display characters.
+     * Flushes the display that indicates whether the player has already picked up a key, up to the score display.
      */
     private void flushKey() {
-        screen.putString(xOffset + hasKeyXOffset, yOffset + hasKeyYOffset, "        ", hasKeyColor, hasKeyBackgroundColor);
+        composer.clear(xOffset + hasKeyXOffset, yOffset + hasKeyYOffset, scoreXOffset - hasKeyXOffset, 1);
     }
 
     /**
-     * Flushes the part of the display that is used to show the score.
-     * This is done simply by overwriting only the display characters.
+     * Flushes the part of the display that is used to show the score, from its start to the end of the row.
      */
     private void flushScore() {
-        screen.putString(xOffset + scoreXOffset, yOffset + scoreYOffset, "                             ", scoreColor, scoreBackgroundColor);
+        composer.clear(xOffset + scoreXOffset, yOffset + scoreYOffset, width - scoreXOffset, 1);
     }
 
     /**
@@ -116,21 +116,21 @@ public class HUD {
                 hearts += heartsRepresentation;
                 hearts += " ";
             }
-            screen.putString(xOffset + heartsXOffset, yOffset + heartsYOffset, hearts, heartsColor, heartsBackgroundColor);
+            composer.putString(xOffset + heartsXOffset, yOffset + heartsYOffset, hearts, heartsColor, heartsBackgroundColor);
         }
 
         if (hasKey != player.isHasKey() || needsUpdate) {
             flushKey();
             hasKey = player.isHasKey();
             String haveKey = "HAS KEY: " + (hasKey ? "YES" : "NO");
-            screen.putString(xOffset + hasKeyXOffset, yOffset + hasKeyYOffset, haveKey, hasKeyColor, hasKeyBackgroundColor);
+            composer.putString(xOffset + hasKeyXOffset, yOffset + hasKeyYOffset, haveKey, hasKeyColor, hasKeyBackgroundColor);
         }
         if (score != player.getScore() || needsUpdate) {
             flushScore();
-            if (deltaTimeHelper.getDeltaTime() >= 1000) {
+            if (clock.getTime() - scoreSnapshotTime >= 1000) {
                 deltaScore = player.getScore() - scoreSnapshot;
                 scoreSnapshot = player.getScore();
-                deltaTimeHelper.reset();
+                scoreSnapshotTime = clock.getTime();
                 deltaScore /= 1000;
                 deltaScore *= 1000;
             }
@@ -142,7 +142,7 @@ public class HUD {
             } else if (deltaScore < -1000) {
                 currentScore += deltaScore;
             }
-            screen.putString(xOffset + scoreXOffset, yOffset + scoreYOffset, currentScore, scoreColor, scoreBackgroundColor);
+            composer.putString(xOffset + scoreXOffset, yOffset + scoreYOffset, currentScore, scoreColor, scoreBackgroundColor);
         }
         needsUpdate = false;
     }
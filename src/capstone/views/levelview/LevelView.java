@@ -1,9 +1,9 @@
 package capstone.views.levelview;
 
-import capstone.gameobject.GameObject;
 import capstone.gameobject.dynamicObjects.DynamicGameObject;
 import capstone.gameobject.dynamicObjects.PlayerGameObject;
 import capstone.gameobject.staticObjects.StaticGameObject;
+import capstone.level.GameJournal;
 import capstone.level.Level;
 import capstone.level.LevelInputOutput;
 import capstone.notificationcenter.NotificationCenter;
@@ -14,21 +14,36 @@ import capstone.views.staticviews.LoseView;
 import capstone.views.staticviews.WinView;
 import com.googlecode.lanterna.input.Key;
 import com.googlecode.lanterna.screen.Screen;
-import com.googlecode.lanterna.terminal.Terminal;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Like any view, the LevelView usually resides within the stack of a ViewManager.
  * It handles all the drawing logic of the game and hands off in-game logic to the attached level object.
+ * <p>
+ * Nothing is written to the screen directly: every frame is composed in a {@link FrameComposer}, which only hands the
+ * cells that have changed since the last frame to the screen.
  */
 public class LevelView extends View {
+    private static final int SCROLL_MARGIN = 8; //fields kept between the player and the edge while scrolling smoothly
     private Level level;
     private boolean hasPrintedStatics;
     private int xOffset;
     private int yOffset;
     private HUD hud;
+    private FrameComposer composer; //frame buffer covering the level area and the HUD below it
+    private StaticPageCache pageCache; //static layers of recently visited camera positions
+    private boolean smoothScrolling; //the camera follows the player field by field instead of jumping by screens
+    private int composedXOffset; //camera position the frame in the composer was composed for
+    private int composedYOffset;
+    private GameJournal journal; //autosave of the level that is being played
+    private boolean autosaveStartFailed; //the journal of the current level could not be started
+    private final ArrayList<DynamicGameObject> visibleGameObjects = new ArrayList<>(); //reused each frame
+    private final ArrayList<DynamicGameObject> cellGameObjects = new ArrayList<>(); //reused for single fields
+    private boolean continueRequested; //a CONTINUE has arrived, the game resumes once the view is on top again
 
     /**
      * Creates a new level view based on a lanterna screen and a given filename relative to the working directory.
@@ -52,8 +67,10 @@ public class LevelView extends View {
     public LevelView(Screen screen, Level level) {
         super(screen, screen.getTerminalSize().getColumns(), screen.getTerminalSize().getRows() - 2);
         this.level = level;
+        this.composer = new FrameComposer(screen, width, height + 2);
+        this.pageCache = new StaticPageCache(level.getStaticGameObjects(), width, height);
         initializeHUD();
-
+        startJournal();
     }
 
     /**
@@ -63,6 +80,47 @@ public class LevelView extends View {
      */
     public void setLevel(Level level) {
         this.level = level;
+        this.pageCache = new StaticPageCache(level.getStaticGameObjects(), width, height);
+        this.hasPrintedStatics = false;
+        startJournal();
+    }
+
+    /**
+     * Starts autosaving the current level. The journal of the previous level is closed; its autosave is replaced once
+     * the new one has been written.
+     */
+    private void startJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+        try {
+            journal = GameJournal.start(level);
+            autosaveStartFailed = false;
+        } catch (IOException ex) {
+            //the game is on screen already, so the failure is only shown in the menu (see isAutosaveFailed)
+            journal = null;
+            autosaveStartFailed = true;
+        }
+    }
+
+    /**
+     * Whether the current level is not autosaved, because the autosave could not be started or writing it has failed
+     * since.
+     *
+     * @return the autosave has failed
+     */
+    public boolean isAutosaveFailed() {
+        return autosaveStartFailed || journal != null && journal.hasFailed();
+    }
+
+    /**
+     * Stops autosaving and deletes the autosave. Called when the game ends normally, so there is nothing to recover.
+     */
+    public void discardJournal() {
+        if (journal != null) {
+            journal.discard();
+            journal = null;
+        }
     }
 
     /**
@@ -70,7 +128,7 @@ public class LevelView extends View {
      * (usually called after the first initialization of the LevelView object, and after resizing the screen.)
      */
     private void initializeHUD() {
-        hud = new HUD(screen, level.getPlayer(), 0, height, width, height);
+        hud = new HUD(composer, level.getPlayer(), level.getClock(), 0, height, width, height);
         hud.setNeedsUpdate(true);
     }
 
@@ -87,30 +145,29 @@ public class LevelView extends View {
     public void processKeystroke(Key keystroke) {
         if (keystroke.getKind() == Key.Kind.Escape) {
             this.viewStackAddition = new MenuView(screen, width, height, this);
-            level.getPlayer().setPaused(true);
+            level.setPaused(true);
         }
         level.processKeystroke(keystroke);
     }
 
     /**
-     * Updates the current view based on the time passed in between.
+     * Updates the game logic of the level by one simulation tick and moves the camera if necessary. Drawing happens
+     * separately in {@link #render()}.
      *
-     * @param deltaTime time delta since last call
+     * @param deltaTime length of the simulation tick
      * @return successful update
      */
     @Override
     public boolean update(int deltaTime) {
         //Check whether the game was just unpaused
-        if (NotificationCenter.checkForNotification(NotificationMessage.CONTINUE)) {
-            NotificationCenter.removeNotification(NotificationMessage.CONTINUE);
+        if (continueRequested) {
+            continueRequested = false;
             screen.clear();
-            level.getPlayer().setPaused(false);
+            level.setPaused(false);
             this.processResize();
         }
 
         PlayerGameObject playerGameObject = level.getPlayer();
-        StaticGameObject[][] staticGameObjects = level.getStaticGameObjects();
-        ArrayList<DynamicGameObject> dynamicGameObjects = level.getDynamicGameObjects();
         level.updateEntities(deltaTime);
         if (playerGameObject.isHasReachedExit()) {
             //The player has won the game, we will show a congratulation to him.
@@ -122,6 +179,22 @@ public class LevelView extends View {
             this.viewStackAddition = new LoseView(screen, width, height, this);
         }
 
+        if (smoothScrolling) {
+            followPlayer(playerGameObject);
+        } else {
+            jumpToPlayer(playerGameObject);
+        }
+        //the frame is composed again for the new camera position when it is rendered
+        level.setFocus(xOffset, yOffset, width, height);
+        return true;
+    }
+
+    /**
+     * Moves the camera by whole screens until the player is visible again.
+     *
+     * @param playerGameObject the player
+     */
+    private void jumpToPlayer(PlayerGameObject playerGameObject) {
         // check whether the player is out of bounds for the camera
         while (playerGameObject.getX() >= xOffset + width || playerGameObject.getY() >= yOffset + height || playerGameObject.getX() < xOffset || playerGameObject.getY() < yOffset) {
             //adjust the camera accordingly
@@ -141,114 +214,243 @@ public class LevelView extends View {
                 //scroll by one screen size upwards
                 this.yOffset -= height;
             }
+            clampCamera();
+        }
+    }
 
-            // it is possible that there is not enough room for scrolling one whole screen.
-            // in that case, adjust scrolling to the maximum.
-            if (xOffset + width > level.getLevelWidth()) {
-                //adjust to the very right of the level
-                this.xOffset = level.getLevelWidth() - width;
-            }
-            if (yOffset + height > level.getLevelHeight()) {
-                //adjust to the very bottom of the level
-                this.yOffset = level.getLevelHeight() - height;
-            }
-            if (xOffset < 0) {
-                //adjust to the very left of the level
-                this.xOffset = 0;
-            }
-            if (yOffset < 0) {
-                //adjust to the very right of the level
-                this.yOffset = 0;
-            }
-
-            //the camera has moved, so all static and dynamic objects need to be rendered again.
-            this.hasPrintedStatics = false;
-            for (DynamicGameObject g : dynamicGameObjects) {
-                g.setNeedsUpdate(true);
-            }
-
-            //the hud needs to be rendered again since we are going to clear the screen.
-            this.hud.setNeedsUpdate(true);
-            screen.clear();
+    /**
+     * Moves the camera just far enough to keep the player SCROLL_MARGIN fields away from the edges of the screen
+     * (as far as the level allows).
+     *
+     * @param playerGameObject the player
+     */
+    private void followPlayer(PlayerGameObject playerGameObject) {
+        int marginX = Math.min(SCROLL_MARGIN, (width - 1) / 2);
+        int marginY = Math.min(SCROLL_MARGIN, (height - 1) / 2);
+        if (playerGameObject.getX() < xOffset + marginX) {
+            this.xOffset = playerGameObject.getX() - marginX;
+        } else if (playerGameObject.getX() >= xOffset + width - marginX) {
+            this.xOffset = playerGameObject.getX() - width + marginX + 1;
+        }
+        if (playerGameObject.getY() < yOffset + marginY) {
+            this.yOffset = playerGameObject.getY() - marginY;
+        } else if (playerGameObject.getY() >= yOffset + height - marginY) {
+            this.yOffset = playerGameObject.getY() - height + marginY + 1;
         }
+        clampCamera();
+    }
 
-        // if necessary, print static objects to the screen.
-        if (!hasPrintedStatics) {
-            GameObject[][] staticsForFrame = level.requestStaticObjectsForFrame(xOffset, yOffset, width, height);
-            for (int y = 0; y < staticsForFrame[0].length; ++y) {
-                for (int x = 0; x < staticsForFrame.length; ++x) {
-                    GameObject g = staticsForFrame[x][y];
-                    if (g != null) {
-                        screen.putString(x, y, Character.toString(g.getRepresentation()), g.getForegroundColor(), g.getBackgroundColor());
-                    }
-                }
-            }
-            hasPrintedStatics = true;
+    /**
+     * Keeps the camera within the level. It is possible that there is not enough room for scrolling as far as
+     * requested; in that case, scrolling is adjusted to the maximum.
+     */
+    private void clampCamera() {
+        if (xOffset + width > level.getLevelWidth()) {
+            //adjust to the very right of the level
+            this.xOffset = level.getLevelWidth() - width;
+        }
+        if (yOffset + height > level.getLevelHeight()) {
+            //adjust to the very bottom of the level
+            this.yOffset = level.getLevelHeight() - height;
         }
+        if (xOffset < 0) {
+            //adjust to the very left of the level
+            this.xOffset = 0;
+        }
+        if (yOffset < 0) {
+            //adjust to the very top of the level
+            this.yOffset = 0;
+        }
+    }
 
-        // order the game to do the game logic necessary for the game to progress.
+    /**
+     * Sets whether the camera follows the player field by field, instead of jumping by a whole screen once he has
+     * left it. While scrolling smoothly, the frame is shifted and only the newly uncovered fields are composed.
+     *
+     * @param smoothScrolling scroll smoothly
+     */
+    public void setSmoothScrolling(boolean smoothScrolling) {
+        this.smoothScrolling = smoothScrolling;
+    }
 
+    /**
+     * Whether the camera follows the player field by field.
+     *
+     * @return scrolling smoothly
+     */
+    public boolean isSmoothScrolling() {
+        return smoothScrolling;
+    }
 
-        //redraw the dynamic game objects based on necessity.
-        for (DynamicGameObject d : dynamicGameObjects) {
-            if (d.isNeedsUpdate()) {
-                int x = d.getX();
-                int y = d.getY();
-                int oldX = d.getOldX();
-                int oldY = d.getOldY();
-                //check whether the element is within boundaries, currently leaving the boundaries or currently entering
-                // the boundaries or whether it should be removed. (-1|-1)
-                if (!(x < xOffset || y < yOffset - 1 || x >= xOffset + width || y >= yOffset + height + 1) || (x == -1 && y == -1)) {
-                    if (!(y >= yOffset + height)) {
-                        screen.putString(x - xOffset, y - yOffset, d.toString(), d.getForegroundColor(), d.getBackgroundColor());
-                    }
-                    if (oldX != x || oldY != y) {
-                        StaticGameObject staticGameObject = staticGameObjects[oldX][oldY];
-                        if (staticGameObject != null) {
-                            screen.putString(oldX - xOffset, oldY - yOffset, staticGameObject.toString(), staticGameObject.getForegroundColor(), staticGameObject.getBackgroundColor());
-                        } else if (!(oldY >= yOffset + height)) {
-                            screen.putString(d.getOldX() - xOffset, d.getOldY() - yOffset, " ", Terminal.Color.DEFAULT, Terminal.Color.DEFAULT);
-                        }
-                    }
-                    d.setNeedsUpdate(false);
-                }
+    /**
+     * Composes everything that has changed since the last frame: the whole level area after the camera has jumped,
+     * only the uncovered fields after it has scrolled smoothly, the fields the level has marked as dirty (see
+     * {@link Level#getDirtyCell(int)}), and the HUD. The composed frame is then handed to the screen, which only
+     * receives the cells that differ from the last frame.
+     */
+    @Override
+    public void render() {
+        int dx = xOffset - composedXOffset;
+        int dy = yOffset - composedYOffset;
+        if (!hasPrintedStatics || ((dx != 0 || dy != 0) && (!smoothScrolling || Math.abs(dx) >= width || Math.abs(dy) >= height))) {
+            // compose all objects on screen, the static layer first.
+            composer.putCells(0, 0, width, height, pageCache.getPage(xOffset, yOffset));
+            composeDynamicObjects(0, 0, width, height);
+            hasPrintedStatics = true;
+            //everything on screen has just been composed
+            level.clearDirtyCells();
+        } else if (dx != 0 || dy != 0) {
+            //move what is already there along with the camera and compose the strips that have been uncovered
+            composer.scroll(dx, dy, 0, 0, width, height);
+            if (dx != 0) {
+                composeArea(dx > 0 ? width - dx : 0, 0, Math.abs(dx), height);
+            }
+            if (dy != 0) {
+                composeArea(0, dy > 0 ? height - dy : 0, width, Math.abs(dy));
             }
         }
-        //finally, render the HUD with all the information (if necessary)
+        composedXOffset = xOffset;
+        composedYOffset = yOffset;
+
+        //draw the fields on which something has changed: objects that have moved onto or away from them, changed
+        //their representation, or have appeared or disappeared (collided bullets, killed traps)
+        for (int i = 0; i < level.getDirtyCellCount(); ++i) {
+            int cell = level.getDirtyCell(i);
+            redrawField(cell % level.getLevelWidth(), cell / level.getLevelWidth());
+        }
+        level.clearDirtyCells();
+        //render the HUD with all the information (if necessary)
         hud.render();
-        return true;
+        //finally, write the cells that have changed to the screen
+        composer.flush();
     }
 
     /**
-     * Processes the resize of the screen by redrawing the static game objects in the next frame, updating all the
-     * dynamic game objects, and adjusting width and height of view and HUD.
+     * Gets the amount of cells that were written to the screen for the last frame.
+     *
+     * @return amount of cells
+     */
+    public int getEmittedCells() {
+        return composer.getEmittedCells();
+    }
+
+    /**
+     * Whether a field of the level is currently visible on screen.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     * @return field is visible
+     */
+    private boolean isOnScreen(int x, int y) {
+        return x >= xOffset && y >= yOffset && x < xOffset + width && y < yOffset + height;
+    }
+
+    /**
+     * Redraws a single field of the level with whatever is on top: the player, another dynamic game object, a static
+     * game object, or empty space. Fields outside of the screen are ignored.
+     *
+     * @param x x coordinate of the field
+     * @param y y coordinate of the field
+     */
+    private void redrawField(int x, int y) {
+        if (!isOnScreen(x, y)) {
+            return;
+        }
+        level.queryDynamicGameObjectsAt(x, y, cellGameObjects);
+        if (!cellGameObjects.isEmpty()) {
+            PlayerGameObject player = level.getPlayer();
+            DynamicGameObject d = player.getX() == x && player.getY() == y ? player : cellGameObjects.get(0);
+            composer.put(x - xOffset, y - yOffset, d.getRepresentation(), d.getForegroundColor(), d.getBackgroundColor());
+            cellGameObjects.clear();
+            return;
+        }
+        StaticGameObject staticGameObject = level.getStaticGameObjects().get(x, y);
+        if (staticGameObject != null) {
+            composer.put(x - xOffset, y - yOffset, staticGameObject.getRepresentation(), staticGameObject.getForegroundColor(), staticGameObject.getBackgroundColor());
+        } else {
+            composer.put(x - xOffset, y - yOffset, FrameComposer.BLANK);
+        }
+    }
+
+    /**
+     * Composes all static and dynamic game objects within a rectangle of the screen.
+     *
+     * @param x      x coordinate of the top left corner on the screen
+     * @param y      y coordinate of the top left corner on the screen
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     */
+    private void composeArea(int x, int y, int width, int height) {
+        composer.putCells(x, y, width, height, pageCache.renderArea(xOffset + x, yOffset + y, width, height));
+        composeDynamicObjects(x, y, width, height);
+    }
+
+    /**
+     * Composes all dynamic game objects within a rectangle of the screen, the player last so he stays on top.
+     *
+     * @param x      x coordinate of the top left corner on the screen
+     * @param y      y coordinate of the top left corner on the screen
+     * @param width  width of the rectangle
+     * @param height height of the rectangle
+     */
+    private void composeDynamicObjects(int x, int y, int width, int height) {
+        level.queryDynamicGameObjectsInRectangle(xOffset + x, yOffset + y, width, height, visibleGameObjects);
+        for (int i = 0; i < visibleGameObjects.size(); ++i) {
+            DynamicGameObject d = visibleGameObjects.get(i);
+            composer.put(d.getX() - xOffset, d.getY() - yOffset, d.getRepresentation(), d.getForegroundColor(), d.getBackgroundColor());
+        }
+        visibleGameObjects.clear();
+        PlayerGameObject player = level.getPlayer();
+        int playerX = player.getX() - xOffset;
+        int playerY = player.getY() - yOffset;
+        if (playerX >= x && playerY >= y && playerX < x + width && playerY < y + height) {
+            composer.put(playerX, playerY, player.getRepresentation(), player.getForegroundColor(), player.getBackgroundColor());
+        }
+    }
+
+    /**
+     * Processes the resize of the screen by composing the whole frame again and adjusting width and height of view
+     * and HUD. Also called after the screen has been cleared by someone else, since the new frame buffer is written to
+     * the screen as a whole.
      */
     @Override
     public void processResize() {
         //ensure everything is redrawn properly
         this.hasPrintedStatics = false;
-        for (DynamicGameObject d : level.getDynamicGameObjects()) {
-            d.setNeedsUpdate(true);
-        }
-        level.getPlayer().setNeedsUpdate(true);
         width = screen.getTerminalSize().getColumns();
         height = screen.getTerminalSize().getRows() - 2;
+        composer = new FrameComposer(screen, width, height + 2);
+        pageCache = new StaticPageCache(level.getStaticGameObjects(), width, height);
         initializeHUD();
     }
 
     /**
-     * Management Update function that is called regardless of whether this is the top view or not.
-     * Reacts to Notifications about saving and loading levels.
+     * The level view listens for the game being continued and for save files to be loaded, regardless of whether it
+     * is the top view or not.
+     *
+     * @return CONTINUE and SAVE_LOAD
+     */
+    @Override
+    public Set<NotificationMessage> getSubscriptions() {
+        return EnumSet.of(NotificationMessage.CONTINUE, NotificationMessage.SAVE_LOAD);
+    }
+
+    /**
+     * Reacts to Notifications about continuing the game and loading save files. Continuing only takes effect once
+     * the menus on top of the level view have been removed.
+     *
+     * @param message notification that has arrived
      */
     @Override
-    public void managementUpdate() {
-        if (NotificationCenter.checkForNotification(NotificationMessage.SAVE_LOAD)) {
+    public void onNotification(NotificationMessage message) {
+        if (message == NotificationMessage.CONTINUE) {
+            continueRequested = true;
+        } else if (message == NotificationMessage.SAVE_LOAD) {
             try {
-                level = LevelInputOutput.readLevel("save.properties");
+                setLevel(LevelInputOutput.readSave());
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
-            NotificationCenter.removeNotification(NotificationMessage.SAVE_LOAD);
         }
     }
 
@@ -0,0 +1,111 @@
+package capstone.views.levelview;
+
+import capstone.gameobject.staticObjects.StaticGameObject;
+import capstone.level.TileGrid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The static page cache keeps the static layer of recently visited camera positions, already packed into cells for
+ * the {@link FrameComposer}. When the player walks back and forth across the edge of the screen, the camera jumps
+ * between the same two positions, and their static layers are simply copied instead of being looked up field by field
+ * again.
+ * <p>
+ * Only a limited amount of pages is kept; once there are more, the page that was used least recently is dropped. All
+ * pages are dropped as soon as a tile of the level changes, since any of them might show it.
+ */
+class StaticPageCache {
+    private static final int MAXIMUM_PAGES = 16;
+
+    private final TileGrid grid;
+    private final int width;
+    private final int height;
+    private final LinkedHashMap<Long, int[]> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private int gridModifications; //modification count of the grid the cached pages were rendered from
+    private final byte[] types; //tile types of the area that is being rendered, reused for every page
+    private final int[] area; //cells of the last area rendered by renderArea
+
+    /**
+     * Creates an empty cache for pages of the given size.
+     *
+     * @param grid   tiles of the level
+     * @param width  width of a page in fields
+     * @param height height of a page in fields
+     */
+    StaticPageCache(TileGrid grid, int width, int height) {
+        this.grid = grid;
+        this.width = Math.max(width, 0);
+        this.height = Math.max(height, 0);
+        this.gridModifications = grid.getModificationCount();
+        this.types = new byte[this.width * this.height];
+        this.area = new int[this.width * this.height];
+    }
+
+    /**
+     * Gets the static layer of the page whose top left field is at the given position. Fields outside of the level
+     * are blank. The page is rendered if it is not cached yet.
+     *
+     * @param xOffset x coordinate of the top left field of the page
+     * @param yOffset y coordinate of the top left field of the page
+     * @return cells of the page, row by row; must not be changed
+     */
+    int[] getPage(int xOffset, int yOffset) {
+        if (grid.getModificationCount() != gridModifications) {
+            pages.clear();
+            gridModifications = grid.getModificationCount();
+        }
+        long key = (long) xOffset << 32 | yOffset & 0xFFFFFFFFL;
+        int[] page = pages.get(key);
+        if (page == null) {
+            page = new int[width * height];
+            render(xOffset, yOffset, width, height, page);
+            pages.put(key, page);
+            trim();
+        }
+        return page;
+    }
+
+    /**
+     * Renders the static layer of an area that is not larger than a page, without caching it.
+     *
+     * @param x      x coordinate of the top left field of the area
+     * @param y      y coordinate of the top left field of the area
+     * @param width  width of the area in fields
+     * @param height height of the area in fields
+     * @return cells of the area, row by row; only valid until the next call
+     */
+    int[] renderArea(int x, int y, int width, int height) {
+        render(x, y, width, height, area);
+        return area;
+    }
+
+    /**
+     * Renders the static layer of an area into a buffer.
+     *
+     * @param x      x coordinate of the top left field of the area
+     * @param y      y coordinate of the top left field of the area
+     * @param width  width of the area in fields
+     * @param height height of the area in fields
+     * @param cells  buffer of at least width * height cells
+     */
+    private void render(int x, int y, int width, int height, int[] cells) {
+        grid.copyTileTypes(x, y, width, height, types);
+        for (int i = 0; i < width * height; ++i) {
+            StaticGameObject s = TileGrid.getFlyweight(types[i]);
+            cells[i] = s == null ? FrameComposer.BLANK : FrameComposer.pack(s.getRepresentation(), s.getForegroundColor(), s.getBackgroundColor());
+        }
+    }
+
+    /**
+     * Drops the least recently used pages until the cache fits into its maximum size.
+     */
+    private void trim() {
+        Iterator<Map.Entry<Long, int[]>> iterator = pages.entrySet().iterator();
+        while (pages.size() > MAXIMUM_PAGES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -12,9 +12,12 @@ import com.googlecode.lanterna.input.Key;
 import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.terminal.Terminal;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * The Menu View allows users navigate a structure of menu points, Choices, that will in return trigger notifications
@@ -23,6 +26,7 @@ import java.util.Arrays;
  * @see NotificationCenter
  */
 public class MenuView extends View {
+    private static final String AUTOSAVE_FAILURE_STATUS = "Autosaving failed, the game is no longer saved automatically.";
     private boolean hasDrawnText;
     private Level level;
     private Terminal.Color textColorForeground = Terminal.Color.WHITE;
@@ -40,6 +44,7 @@ public class MenuView extends View {
             new Choice("Quit", NotificationMessage.QUIT)
     ));
     private int cursorPosition = 0;
+    private CompletableFuture<Void> pendingSave; //save that is being written in the background, null if none
 
     /**
      * Creates a new Menu View that allows the user to select different choices.
@@ -57,6 +62,9 @@ public class MenuView extends View {
             // There exists a level "below" the menu, so we can add a "continue" message.
             choices.add(0, new Choice("Continue", NotificationMessage.CONTINUE));
         }
+        if (levelView.isAutosaveFailed()) {
+            statusLine = AUTOSAVE_FAILURE_STATUS;
+        }
     }
 
     /**
@@ -142,54 +150,92 @@ public class MenuView extends View {
     }
 
     /**
-     * Checks for different tasks such as continuing the game, saving a game, quitting the game and creating subviews
-     * such as legends (which can happen independently of the current position in the viewstack).
+     * The menu listens for different tasks such as continuing the game, saving a game, quitting the game and creating
+     * subviews such as legends (which can happen independently of the current position in the viewstack), and for the
+     * results of saving and autosaving.
+     *
+     * @return notifications handled by the menu
      */
     @Override
-    public void managementUpdate() {
-        if (NotificationCenter.checkForNotification(NotificationMessage.CONTINUE)) {
-            //Notice however that the Notification does not get removed here. Instead, it is used in the LevelView to
-            //Ensure that all on-screen elements will be redrawn correctly.
-            viewStackRemoval = true;
-        }
-        if (NotificationCenter.checkForNotification(NotificationMessage.SAVE_SAVE)) {
-            saveCurrentLevel();
-            NotificationCenter.removeNotification(NotificationMessage.SAVE_SAVE);
-        }
-        if (NotificationCenter.checkForNotification(NotificationMessage.SAVE_QUIT)) {
-            saveCurrentLevel();
-            NotificationCenter.removeNotification(NotificationMessage.SAVE_QUIT);
-            NotificationCenter.postNotification(NotificationMessage.QUIT);
-        }
-        if (NotificationCenter.checkForNotification(NotificationMessage.LEGEND)) {
-            NotificationCenter.removeNotification(NotificationMessage.LEGEND);
-            this.viewStackAddition = new LegendView(screen, width, height);
-        }
-        if (NotificationCenter.checkForNotification(NotificationMessage.SAVE_LOAD_SUCCESS)) {
-            NotificationCenter.removeNotification(NotificationMessage.SAVE_LOAD_SUCCESS);
-            NotificationCenter.postNotification(NotificationMessage.CONTINUE);
-        }
-        if (NotificationCenter.checkForNotification(NotificationMessage.LEVEL_LOAD_BY_NAME)) {
-            NotificationCenter.removeNotification(NotificationMessage.LEVEL_LOAD_BY_NAME);
-            this.viewStackAddition = new LevelLoadView(screen, width, height, levelView);
-        }
-        if (NotificationCenter.checkForNotification(NotificationMessage.SAVE_SAVE_SUCCESS)) {
-            this.statusLineDrawn = false;
-            this.statusLine = "Successfully saved file to save.properties.";
-            NotificationCenter.removeNotification(NotificationMessage.SAVE_SAVE_SUCCESS);
-        }
+    public Set<NotificationMessage> getSubscriptions() {
+        return EnumSet.of(NotificationMessage.CONTINUE, NotificationMessage.SAVE_SAVE, NotificationMessage.SAVE_QUIT,
+                NotificationMessage.LEGEND, NotificationMessage.SAVE_LOAD_SUCCESS,
+                NotificationMessage.LEVEL_LOAD_BY_NAME, NotificationMessage.SAVE_SAVE_SUCCESS,
+                NotificationMessage.SAVE_SAVE_FAILURE, NotificationMessage.AUTOSAVE_FAILURE);
+    }
 
+    /**
+     * Carries out the task a notification asks for.
+     *
+     * @param message notification that has arrived
+     */
+    @Override
+    public void onNotification(NotificationMessage message) {
+        switch (message) {
+            case CONTINUE:
+                //the LevelView receives the notification as well, to ensure that all on-screen elements will be
+                //redrawn correctly.
+                viewStackRemoval = true;
+                break;
+            case SAVE_SAVE:
+                saveCurrentLevel();
+                break;
+            case SAVE_QUIT:
+                saveCurrentLevel();
+                //the game must not end before the save has been written
+                waitForSave();
+                NotificationCenter.postNotification(NotificationMessage.QUIT);
+                break;
+            case LEGEND:
+                this.viewStackAddition = new LegendView(screen, width, height);
+                break;
+            case SAVE_LOAD_SUCCESS:
+                NotificationCenter.postNotification(NotificationMessage.CONTINUE);
+                break;
+            case LEVEL_LOAD_BY_NAME:
+                this.viewStackAddition = new LevelLoadView(screen, width, height, levelView);
+                break;
+            case SAVE_SAVE_SUCCESS:
+                this.statusLineDrawn = false;
+                this.statusLine = "Successfully saved file to " + LevelInputOutput.SAVE_FILENAME + ".";
+                break;
+            case SAVE_SAVE_FAILURE:
+                this.statusLineDrawn = false;
+                this.statusLine = "Saving to " + LevelInputOutput.SAVE_FILENAME + " failed.";
+                break;
+            case AUTOSAVE_FAILURE:
+                this.statusLineDrawn = false;
+                this.statusLine = AUTOSAVE_FAILURE_STATUS;
+                break;
+            default:
+        }
     }
 
     /**
-     * Saves the current level to a file called "save.properties". The save-file is compatible to other level-files,
-     * but has been given a distinct name to prevent overwriting of the original file.
+     * Saves the current level to a file called "save.level". The save-file is compatible to other level-files,
+     * but has been given a distinct name to prevent overwriting of the original file. The file is written in the
+     * background; SAVE_SAVE_SUCCESS is posted once it has been written, SAVE_SAVE_FAILURE if that failed.
      */
     private void saveCurrentLevel() {
+        pendingSave = LevelInputOutput.writeLevelAsync(level, LevelInputOutput.SAVE_FILENAME);
+        pendingSave.whenComplete((result, ex) -> {
+            if (ex != null) {
+                ex.printStackTrace();
+                NotificationCenter.postNotification(NotificationMessage.SAVE_SAVE_FAILURE);
+            }
+        });
+    }
+
+    /**
+     * Waits until the save that is being written has been finished. Whether it has failed is posted by the save
+     * itself.
+     */
+    private void waitForSave() {
         try {
-            LevelInputOutput.writeLevel(level, "save.properties");
-        } catch (IOException ex) {
-            ex.printStackTrace();
+            pendingSave.join();
+        } catch (CompletionException ex) {
+            //already reported by the save
         }
+        pendingSave = null;
     }
 }
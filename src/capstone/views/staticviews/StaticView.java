@@ -46,11 +46,4 @@ public abstract class StaticView extends View {
         height = screen.getTerminalSize().getRows();
         hasDrawnStatics = false;
     }
-
-    /**
-     * Static views do not require management updates.
-     */
-    @Override
-    public void managementUpdate() {
-    }
 }